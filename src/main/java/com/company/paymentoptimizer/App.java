@@ -1,41 +1,225 @@
 package com.company.paymentoptimizer;
 
+import com.company.paymentoptimizer.algo.DecisionTrace;
 import com.company.paymentoptimizer.algo.Optimizer;
+import com.company.paymentoptimizer.dist.ShardCoordinator;
+import com.company.paymentoptimizer.io.CheckpointLog;
+import com.company.paymentoptimizer.io.FastInputReader;
 import com.company.paymentoptimizer.io.InputReader;
+import com.company.paymentoptimizer.io.ResultCache;
 import com.company.paymentoptimizer.model.Allocation;
 import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
 import com.company.paymentoptimizer.model.PaymentMethod;
+import com.company.paymentoptimizer.pipeline.OptimizationPipeline;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class App {
     public static void main(String[] args) {
+        long mainStartNanos = System.nanoTime();
         if (args.length < 2) {
-            System.err.println("Usage: java -jar <paymentoptimizer.jar> <input> <output>");
+            printUsage();
             System.exit(1);
         }
 
         String ordersPath = args[0];
         String paymentMethodsPath = args[1];
 
+        //opcjonalne parametry
+        int traceCapacity = 0;
+        String traceOut = null;
+        boolean traceCandidates = false;
+        String checkpointPath = null;
+        int checkpointInterval = 10000;
+        boolean resume = false;
+        boolean pipeline = false;
+        int queueCapacity = 4096;
+        long candidateMemoryMb = 0;
+        String spillDir = System.getProperty("java.io.tmpdir");
+        boolean fast = false;
+        boolean timing = false;
+        String cacheDir = null;
+        long cacheMaxMb = 256;
+        int workers = 0;
+        boolean columnar = false;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--trace" -> traceCapacity = parseTraceCapacity(requireValue(args, ++i));
+                case "--trace-out" -> traceOut = requireValue(args, ++i);
+                case "--trace-candidates" -> traceCandidates = true;
+                case "--checkpoint" -> checkpointPath = requireValue(args, ++i);
+                case "--checkpoint-interval" -> checkpointInterval = Integer.parseInt(requireValue(args, ++i));
+                case "--resume" -> resume = true;
+                case "--pipeline" -> pipeline = true;
+                case "--queue-capacity" -> queueCapacity = Integer.parseInt(requireValue(args, ++i));
+                case "--candidate-memory" -> candidateMemoryMb = Long.parseLong(requireValue(args, ++i));
+                case "--spill-dir" -> spillDir = requireValue(args, ++i);
+                case "--fast" -> fast = true;
+                case "--timing" -> timing = true;
+                case "--cache-dir" -> cacheDir = requireValue(args, ++i);
+                case "--cache-max-mb" -> cacheMaxMb = Long.parseLong(requireValue(args, ++i));
+                case "--workers" -> workers = Integer.parseInt(requireValue(args, ++i));
+                case "--columnar" -> columnar = true;
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    printUsage();
+                    System.exit(1);
+                }
+            }
+        }
+        if (resume && checkpointPath == null) {
+            System.err.println("--resume requires --checkpoint <file>");
+            System.exit(1);
+        }
+        if (resume && pipeline) {
+            //wznowienie potrzebuje kompletu zamówień zanim ruszy optymalizacja
+            System.err.println("--resume cannot be combined with --pipeline");
+            System.exit(1);
+        }
+        if (pipeline && cacheDir != null) {
+            //klucz cache to hash kompletu zamówień, a potok wypisuje wynik zanim je wszystkie przeczyta
+            System.err.println("--cache-dir cannot be combined with --pipeline");
+            System.exit(1);
+        }
+        if (columnar && (pipeline || fast)) {
+            //tabela kolumnowa jest wypełniana przez własny deserializer Jacksona i nie przyjmuje zamówień pojedynczo
+            System.err.println("--columnar cannot be combined with --pipeline or --fast");
+            System.exit(1);
+        }
+        if (traceCandidates && traceCapacity == 0) {
+            System.err.println("--trace-candidates requires --trace <capacity>");
+            System.exit(1);
+        }
+        if (workers > 0 && (pipeline || checkpointPath != null || traceCapacity > 0 || candidateMemoryMb > 0)) {
+            //te opcje dotyczą optymalizatora w bieżącym procesie
+            System.err.println("--workers cannot be combined with --pipeline, --checkpoint, --trace or --candidate-memory");
+            System.exit(1);
+        }
+
+        CheckpointLog checkpointLog = null;
         try {
-            InputReader inputReader = new InputReader();
-            List<Order> orders = inputReader.readOrders(ordersPath);
-            List<PaymentMethod> paymentMethods = inputReader.readPaymentMethods(paymentMethodsPath);
+            if (checkpointPath != null && !resume) {
+                checkpointLog = CheckpointLog.create(Path.of(checkpointPath));
+            }
+
+            if (pipeline) {
+                CheckpointLog pipelineCheckpointLog = checkpointLog;
+                int traceSize = traceCapacity;
+                String traceFile = traceOut;
+                boolean traceAllCandidates = traceCandidates;
+                int interval = checkpointInterval;
+                long memoryMb = candidateMemoryMb;
+                String tempDir = spillDir;
+                new OptimizationPipeline(new InputReader(), queueCapacity).run(ordersPath, paymentMethodsPath, optimizer -> {
+                    enableTrace(optimizer, traceSize, traceFile, traceAllCandidates);
+                    limitCandidateMemory(optimizer, memoryMb, tempDir);
+                    if (pipelineCheckpointLog != null) {
+                        optimizer.enableCheckpoints(pipelineCheckpointLog, interval);
+                    }
+                }, System.out);
+                reportTiming(timing, mainStartNanos);
+                return;
+            }
+
+            List<Order> orders;
+            List<PaymentMethod> paymentMethods;
+            OrderTable orderTable = null;
+            if (columnar) {
+                InputReader inputReader = new InputReader();
+                orderTable = inputReader.readOrderTable(ordersPath);
+                orders = orderTable.asOrders();
+                paymentMethods = inputReader.readPaymentMethods(paymentMethodsPath);
+            } else if (fast && Files.isRegularFile(Path.of(ordersPath))) {
+                //bez Jacksona - krótszy start JVM dla małych plików (katalogi i glob tylko przez InputReader)
+                FastInputReader fastInputReader = new FastInputReader();
+                orders = fastInputReader.readOrders(ordersPath);
+                paymentMethods = fastInputReader.readPaymentMethods(paymentMethodsPath);
+            } else {
+                InputReader inputReader = new InputReader();
+                orders = inputReader.readOrders(ordersPath);
+                paymentMethods = inputReader.readPaymentMethods(paymentMethodsPath);
+            }
+
+            Optimizer optimizer = orderTable != null
+                    ? new Optimizer(orderTable, paymentMethods)
+                    : new Optimizer(orders, paymentMethods);
+
+            //wznowienie zawsze liczy dalej, cache pomijamy
+            ResultCache cache = null;
+            String cacheKey = null;
+            if (cacheDir != null && !resume) {
+                //wynik z shardami zależy od liczby workerów - osobna "wersja" w cache
+                String solverVersion = workers > 0 ? Optimizer.SOLVER_VERSION + "/workers-" + workers : Optimizer.SOLVER_VERSION;
+                cache = new ResultCache(Path.of(cacheDir), cacheMaxMb * 1024 * 1024, solverVersion);
+                cacheKey = cache.key(orders, paymentMethods);
+                Optional<ResultCache.CachedResult> cached = cache.lookup(cacheKey, orders, paymentMethods);
+                if (cached.isPresent()) {
+                    //te same komunikaty co przy liczeniu, żeby stdout nie zależał od stanu cache
+                    for (Order order : cached.get().unallocatedOrders()) {
+                        System.out.println(Optimizer.unallocatedMessage(order));
+                    }
+                    System.out.println(optimizer.generateReport(cached.get().allocations()));
+                    reportTiming(timing, mainStartNanos);
+                    return;
+                }
+            }
 
-            Optimizer optimizer = new Optimizer(orders, paymentMethods);
-            List<Allocation> allocations = optimizer.optimize();
+            //zamówienia bez alokacji zapamiętujemy do wpisu w cache (komunikat jak domyślnie w Optimizer)
+            List<Order> unallocatedOrders = new ArrayList<>();
+            Consumer<Order> unallocatedListener = order -> {
+                System.out.println(Optimizer.unallocatedMessage(order));
+                unallocatedOrders.add(order);
+            };
+            optimizer.setUnallocatedOrderListener(unallocatedListener);
+
+            enableTrace(optimizer, traceCapacity, traceOut, traceCandidates);
+            limitCandidateMemory(optimizer, candidateMemoryMb, spillDir);
+            if (checkpointPath != null) {
+                if (resume) {
+                    CheckpointLog.Resumed resumed = CheckpointLog.resume(Path.of(checkpointPath), orders, paymentMethods,
+                            optimizer.inputHash());
+                    checkpointLog = resumed.log();
+                    if (resumed.checkpoint() != null) {
+                        optimizer.resumeFrom(resumed.checkpoint());
+                    }
+                }
+                optimizer.enableCheckpoints(checkpointLog, checkpointInterval);
+            }
+            List<Allocation> allocations;
+            if (workers > 0) {
+                ShardCoordinator coordinator = new ShardCoordinator(workers);
+                coordinator.setUnallocatedOrderListener(unallocatedListener);
+                allocations = coordinator.run(orders, paymentMethods);
+            } else {
+                allocations = optimizer.optimize();
+            }
 //            for (Allocation allocation : allocations) {
 //                System.out.println(allocation);
 //            }
             System.out.println(optimizer.generateReport(allocations));
+            reportTiming(timing, mainStartNanos);
+            if (cache != null) {
+                //wynik jest już wypisany - nieudany zapis (np. równoległe usuwanie wpisów) nie zmienia kodu wyjścia
+                try {
+                    cache.store(cacheKey, allocations, unallocatedOrders);
+                } catch (IOException | UncheckedIOException e) {
+                    System.err.println("Could not store result in cache: " + e.getMessage());
+                }
+            }
 
         } catch (IOException e){
             System.err.println(e.getMessage());
@@ -45,7 +229,113 @@ public class App {
             System.err.println("Unexpected error: " + e.getMessage());
             e.printStackTrace();
             System.exit(1);
+        } finally {
+            closeQuietly(checkpointLog);
+        }
+
+    }
+
+    /**
+     * Czas od startu JVM do wypisania wyniku. java.management ładujemy dopiero tutaj (tylko z --timing),
+     * a czas jego ładowania odejmujemy od uptime.
+     */
+    private static void reportTiming(boolean timing, long mainStartNanos) {
+        if (!timing) {
+            return;
         }
+        System.out.flush();
+        long resultNanos = System.nanoTime();
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        long measurementMillis = (System.nanoTime() - resultNanos) / 1_000_000;
+        long inMainMillis = (resultNanos - mainStartNanos) / 1_000_000;
+        System.err.println("Time to first result: " + (uptimeMillis - measurementMillis)
+                + " ms since JVM start (" + inMainMillis + " ms in main)");
+    }
+
+    private static void closeQuietly(CheckpointLog checkpointLog) {
+        if (checkpointLog == null) {
+            return;
+        }
+        try {
+            checkpointLog.close();
+        } catch (IOException e) {
+            System.err.println("Could not close checkpoint file: " + e.getMessage());
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: java -jar <paymentoptimizer.jar> <orders.json> <paymentmethods.json> [options]");
+        System.err.println("Options:");
+        System.err.println("  --trace <capacity>   record optimizer decisions in a ring buffer of given size");
+        System.err.println("  --trace-out <file>   write recorded decisions to file instead of stderr");
+        System.err.println("  --trace-candidates   also record every considered option (many events per order)");
+        System.err.println("  --checkpoint <file>  periodically write committed allocations to an append-only file");
+        System.err.println("  --checkpoint-interval <n>  positions processed between checkpoints (default 10000)");
+        System.err.println("  --resume             continue from the last consistent checkpoint in --checkpoint file");
+        System.err.println("  --pipeline           overlap parsing, candidate generation and output on separate threads");
+        System.err.println("  --queue-capacity <n> size of the bounded queues between pipeline stages (default 4096)");
+        System.err.println("  --candidate-memory <MB>  heap budget for phase-one candidates, the rest is spilled to disk");
+        System.err.println("  --spill-dir <dir>    directory for spilled candidate runs (default java.io.tmpdir)");
+        System.err.println("  --fast               reflection-free input parser for faster startup on small files");
+        System.err.println("  --timing             print time to first result to stderr");
+        System.err.println("  --cache-dir <dir>    reuse results for identical inputs from an on-disk cache");
+        System.err.println("  --cache-max-mb <n>   cache size limit, least recently used entries are evicted (default 256)");
+        System.err.println("  --workers <n>        split orders into n shards solved by local worker processes");
+        System.err.println("  --columnar           keep orders in a compact columnar table instead of one object per order");
+    }
+
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            System.err.println("Missing value for option: " + args[index - 1]);
+            printUsage();
+            System.exit(1);
+        }
+        return args[index];
+    }
+
+    private static int parseTraceCapacity(String value) {
+        try {
+            int capacity = Integer.parseInt(value);
+            if (capacity > 0 && capacity <= DecisionTrace.MAX_CAPACITY) {
+                return capacity;
+            }
+        } catch (NumberFormatException e) {
+            //niżej wspólny komunikat
+        }
+        System.err.println("--trace capacity must be a number between 1 and " + DecisionTrace.MAX_CAPACITY + ": " + value);
+        System.exit(1);
+        return 0;
+    }
+
+    private static void enableTrace(Optimizer optimizer, int traceCapacity, String traceOut, boolean traceCandidates) {
+        if (traceCapacity > 0) {
+            DecisionTrace trace = new DecisionTrace(traceCapacity);
+            trace.setRecordCandidates(traceCandidates);
+            optimizer.setDecisionTrace(trace);
+            dumpTraceAtExit(trace, traceOut);
+        }
+    }
+
+    private static void limitCandidateMemory(Optimizer optimizer, long candidateMemoryMb, String spillDir) {
+        if (candidateMemoryMb > 0) {
+            optimizer.setCandidateMemoryBudget(candidateMemoryMb * 1024 * 1024, Path.of(spillDir));
+        }
+    }
 
+    /**
+     * Zrzut bufora decyzji przy zamknięciu JVM (także gdy optymalizacja przerwie się wyjątkiem)
+     */
+    private static void dumpTraceAtExit(DecisionTrace trace, String traceOut) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (traceOut == null) {
+                trace.dump(System.err);
+                return;
+            }
+            try (PrintStream out = new PrintStream(traceOut)) {
+                trace.dump(out);
+            } catch (IOException e) {
+                System.err.println("Could not write decision trace: " + e.getMessage());
+            }
+        }, "decision-trace-dump"));
     }
 }
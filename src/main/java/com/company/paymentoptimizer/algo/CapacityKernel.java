@@ -0,0 +1,13 @@
+package com.company.paymentoptimizer.algo;
+
+/**
+ * Skan "które karty pokryją kwotę X" po tablicy dostępnych limitów (wartości stałoprzecinkowe)
+ */
+public interface CapacityKernel {
+
+    /**
+     * Zapisuje do {@code out} indeksy (rosnąco) kart, dla których {@code available[i] >= amount}
+     * @return liczba znalezionych kart
+     */
+    int collectCovering(long[] available, int length, long amount, int[] out);
+}
@@ -0,0 +1,126 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dostępne limity kart trzymane jako long[] w groszach (skala 2), żeby pytanie "które karty pokryją kwotę X"
+ * było jednym skanem po tablicy prymitywów zamiast porównań BigDecimal (i dało się je zwektoryzować).
+ * Kwotę zaokrąglamy w górę do grosza - przy limicie w pełnych groszach available >= x <=> available >= ceil(x),
+ * więc wynik jest dokładnie taki jak {@link PaymentMethod#canFullyCover}.
+ * Jeśli jakiś limit ma więcej niż 2 miejsca po przecinku, indeks przełącza się na porównania BigDecimal.
+ * Po każdej zmianie wykorzystania karty trzeba wywołać {@link #refresh(PaymentMethod)}.
+ */
+public class CardCapacityIndex {
+
+    private static final int SCALE = 2;
+    private static final String SCALAR_PROPERTY = "paymentoptimizer.scalarKernel";
+
+    private static final CapacityKernel DEFAULT_KERNEL = selectKernel();
+
+    private final List<PaymentMethod> cards;
+    private final Map<PaymentMethod, Integer> indexByCard = new IdentityHashMap<>();
+    private final long[] available;
+    private final CapacityKernel kernel;
+    private boolean exact = true;
+
+    public CardCapacityIndex(List<PaymentMethod> cards) {
+        this(cards, DEFAULT_KERNEL);
+    }
+
+    public CardCapacityIndex(List<PaymentMethod> cards, CapacityKernel kernel) {
+        this.cards = cards;
+        this.kernel = kernel;
+        this.available = new long[cards.size()];
+        for (int i = 0; i < cards.size(); i++) {
+            indexByCard.put(cards.get(i), i);
+            refresh(i);
+        }
+    }
+
+    /**
+     * Kernel SIMD jeśli moduł jdk.incubator.vector jest dostępny (i nie wyłączono go przez
+     * -Dpaymentoptimizer.scalarKernel=true), w przeciwnym razie zwykła pętla
+     */
+    public static CapacityKernel selectKernel() {
+        if (!Boolean.getBoolean(SCALAR_PROPERTY)
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (CapacityKernel) Class.forName("com.company.paymentoptimizer.algo.VectorCapacityKernel")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                //brak wsparcia - zostajemy przy wersji skalarnej
+            }
+        }
+        return new ScalarCapacityKernel();
+    }
+
+    public CapacityKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Zapisuje do {@code out} (rozmiar co najmniej liczba kart) indeksy kart, które w całości pokryją kwotę,
+     * w kolejności kart na liście
+     * @return liczba znalezionych kart
+     */
+    public int collectCovering(BigDecimal amount, int[] out) {
+        if (exact) {
+            return kernel.collectCovering(available, available.length, toCeilingUnits(amount), out);
+        }
+        int count = 0;
+        for (int i = 0; i < cards.size(); i++) {
+            if (cards.get(i).canFullyCover(amount)) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    public PaymentMethod getCard(int index) {
+        return cards.get(index);
+    }
+
+    public int size() {
+        return cards.size();
+    }
+
+    /**
+     * Aktualizacja po zmianie wykorzystania metody (metody spoza indeksu, np. PUNKTY, są pomijane)
+     */
+    public void refresh(PaymentMethod method) {
+        Integer index = indexByCard.get(method);
+        if (index != null) {
+            refresh(index);
+        }
+    }
+
+    private void refresh(int index) {
+        BigDecimal value = cards.get(index).getAvailable();
+        if (value.scale() > SCALE && value.stripTrailingZeros().scale() > SCALE) {
+            exact = false;
+            return;
+        }
+        try {
+            available[index] = value.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            exact = false;
+        }
+    }
+
+    private static long toCeilingUnits(BigDecimal amount) {
+        BigInteger units = amount.setScale(SCALE, RoundingMode.CEILING).unscaledValue();
+        if (units.bitLength() < Long.SIZE) {
+            return units.longValue();
+        }
+        //kwoty spoza zakresu long: żadna karta / każda karta
+        return units.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,204 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+
+/**
+ * Bufor cykliczny (ring buffer) z decyzjami optymalizatora - pozwala wytłumaczyć dlaczego zamówienie
+ * zostało opłacone daną metodą.
+ * Wszystkie tablice są alokowane raz w konstruktorze, a zapis zdarzenia to tylko kilka przypisań referencji
+ * (BigDecimal i modele są niemutowalne / współdzielone, więc nic nie kopiujemy i nie formatujemy stringów).
+ * Formatowanie odbywa się dopiero przy {@link #dump(Appendable)}.
+ * Gdy bufor się zapełni, najstarsze zdarzenia są nadpisywane.
+ * Klasa nie jest thread-safe - Optimizer jest jednowątkowy.
+ */
+public class DecisionTrace {
+
+    public static final byte CANDIDATE = 0;
+    public static final byte REJECTED = 1;
+    public static final byte WINNER = 2;
+    public static final byte RUNNER_UP = 3;
+    //jedno zdarzenie na zamówienie: ile kart nie pokryło kwoty (bez osobnego zdarzenia na kartę)
+    public static final byte REJECTED_CARDS = 4;
+
+    //największa pojemność - zaokrąglenie w górę do potęgi dwójki musi zmieścić się w int
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private static final String[] TYPE_NAMES = {"CANDIDATE", "REJECTED", "WINNER", "RUNNER_UP", "REJECTED_CARDS"};
+
+    private final int mask;
+    private final byte[] types;
+    private final byte[] phases;
+    private final Order[] orders;
+    private final PaymentMethod[] primaryMethods;
+    private final PaymentMethod[] secondaryMethods;
+    private final BigDecimal[] amounts;
+    private final BigDecimal[] discounts;
+    //stan limitów w chwili decyzji - zapamiętujemy referencje do "used", available liczymy dopiero przy dump
+    private final BigDecimal[] usedAtDecision;
+    private final BigDecimal[] secondaryUsedAtDecision;
+    //REJECTED_CARDS: liczba kart, które nie pokryły całej kwoty / reszty po punktach (-1 gdy opcji z punktami nie było)
+    private final int[] rejectedCards;
+    private final int[] rejectedWithPoints;
+    private final int[] cardCounts;
+    private long written;
+    //CANDIDATE to zdarzenie na każdą opcję każdego zamówienia - domyślnie wyłączone, żeby nie wypychało decyzji
+    private boolean recordCandidates;
+
+    /**
+     * @param capacity minimalna liczba zdarzeń (1 - {@link #MAX_CAPACITY}) - zaokrąglana w górę do potęgi dwójki
+     */
+    public DecisionTrace(int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Trace capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.types = new byte[size];
+        this.phases = new byte[size];
+        this.orders = new Order[size];
+        this.primaryMethods = new PaymentMethod[size];
+        this.secondaryMethods = new PaymentMethod[size];
+        this.amounts = new BigDecimal[size];
+        this.discounts = new BigDecimal[size];
+        this.usedAtDecision = new BigDecimal[size];
+        this.secondaryUsedAtDecision = new BigDecimal[size];
+        this.rejectedCards = new int[size];
+        this.rejectedWithPoints = new int[size];
+        this.cardCounts = new int[size];
+    }
+
+    /**
+     * Zapis pojedynczego zdarzenia (hot path - bez alokacji).
+     */
+    public void record(byte type, int phase, Order order, PaymentMethod primary, PaymentMethod secondary,
+                       BigDecimal amount, BigDecimal discount) {
+        int slot = (int) (written++ & mask);
+        types[slot] = type;
+        phases[slot] = (byte) phase;
+        orders[slot] = order;
+        primaryMethods[slot] = primary;
+        secondaryMethods[slot] = secondary;
+        amounts[slot] = amount;
+        discounts[slot] = discount;
+        usedAtDecision[slot] = primary.getUsed();
+        secondaryUsedAtDecision[slot] = secondary != null ? secondary.getUsed() : null;
+    }
+
+    /**
+     * Zbiorcze zdarzenie REJECTED_CARDS dla zamówienia - zamiast jednego REJECTED na każdą kartę,
+     * żeby przy wielu kartach nie wypychać z bufora decyzji WINNER / RUNNER_UP.
+     *
+     * @param rejected           karty, które nie pokryły całej kwoty zamówienia
+     * @param rejectedWithPoints karty, które nie pokryły reszty po punktach, -1 gdy opcji z punktami nie było
+     */
+    public void recordRejectedCards(int phase, Order order, int rejected, int rejectedWithPoints, int cardCount) {
+        int slot = (int) (written++ & mask);
+        types[slot] = REJECTED_CARDS;
+        phases[slot] = (byte) phase;
+        orders[slot] = order;
+        primaryMethods[slot] = null;
+        secondaryMethods[slot] = null;
+        amounts[slot] = order.getValue();
+        discounts[slot] = null;
+        usedAtDecision[slot] = null;
+        secondaryUsedAtDecision[slot] = null;
+        rejectedCards[slot] = rejected;
+        this.rejectedWithPoints[slot] = rejectedWithPoints;
+        cardCounts[slot] = cardCount;
+    }
+
+    /**
+     * Włącza zapis zdarzeń CANDIDATE (każda rozważana opcja). Przy wielu kartach to O(kart) zdarzeń
+     * na zamówienie, więc bez tego bufor trzyma więcej zamówień z WINNER / REJECTED.
+     */
+    public void setRecordCandidates(boolean recordCandidates) {
+        this.recordCandidates = recordCandidates;
+    }
+
+    public boolean recordsCandidates() {
+        return recordCandidates;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Liczba zdarzeń zapisanych od początku (także tych już nadpisanych)
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Liczba zdarzeń aktualnie dostępnych w buforze
+     */
+    public int size() {
+        return (int) Math.min(written, capacity());
+    }
+
+    public void clear() {
+        written = 0;
+    }
+
+    /**
+     * Wypisanie zawartości bufora od najstarszego do najnowszego zdarzenia, jedna linia na zdarzenie:
+     * seq phase TYPE order method[+secondary] amount discount available [secondaryAvailable]
+     * albo dla REJECTED_CARDS: seq phase REJECTED_CARDS order amount rejected=n/karty [withPoints=n/karty]
+     */
+    public void dump(Appendable out) {
+        long first = written - size();
+        try {
+            for (long seq = first; seq < written; seq++) {
+                int slot = (int) (seq & mask);
+                out.append(Long.toString(seq))
+                        .append(" phase").append(Integer.toString(phases[slot]))
+                        .append(' ').append(TYPE_NAMES[types[slot]])
+                        .append(' ').append(orders[slot].getId());
+                if (types[slot] == REJECTED_CARDS) {
+                    out.append(" amount=").append(String.valueOf(amounts[slot]))
+                            .append(" rejected=").append(Integer.toString(rejectedCards[slot]))
+                            .append('/').append(Integer.toString(cardCounts[slot]));
+                    if (rejectedWithPoints[slot] >= 0) {
+                        out.append(" withPoints=").append(Integer.toString(rejectedWithPoints[slot]))
+                                .append('/').append(Integer.toString(cardCounts[slot]));
+                    }
+                    out.append('\n');
+                    continue;
+                }
+
+                PaymentMethod primary = primaryMethods[slot];
+                PaymentMethod secondary = secondaryMethods[slot];
+                out.append(' ').append(primary.getId());
+                if (secondary != null) {
+                    out.append('+').append(secondary.getId());
+                }
+                out.append(" amount=").append(String.valueOf(amounts[slot]))
+                        .append(" discount=").append(String.valueOf(discounts[slot]))
+                        .append(" available=").append(primary.getLimit().subtract(usedAtDecision[slot]).toString());
+                if (secondary != null) {
+                    out.append(" secondaryAvailable=")
+                            .append(secondary.getLimit().subtract(secondaryUsedAtDecision[slot]).toString());
+                }
+                out.append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        dump(sb);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.company.paymentoptimizer.algo;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Parametry reguł rabatowych. Rabat za płatność w całości kartą z promocją i w całości punktami wynika
+ * z rabatu metody płatności, tutaj jest tylko reguła częściowej płatności punktami.
+ * Na ich podstawie {@link DiscountTable} raz liczy tabele kwot, z których korzysta {@link Optimizer}.
+ *
+ * @param partialPointsThreshold minimalna część wartości zamówienia (w %) zapłacona punktami, żeby dostać rabat
+ * @param partialPointsDiscount  rabat (w % wartości zamówienia) za częściową płatność punktami + kartą
+ */
+public record DiscountRules(int partialPointsThreshold, int partialPointsDiscount) {
+
+    /** Reguły z treści zadania: co najmniej 10% punktami daje 10% rabatu */
+    public static final DiscountRules STANDARD = new DiscountRules(10, 10);
+
+    public DiscountRules {
+        if (partialPointsThreshold < 0 || partialPointsThreshold > 100
+                || partialPointsDiscount < 0 || partialPointsDiscount > 100) {
+            throw new IllegalArgumentException("Percentages must be between 0 and 100: "
+                    + partialPointsThreshold + ", " + partialPointsDiscount);
+        }
+    }
+
+    /**
+     * Procent kwoty zaokrąglony do groszy
+     */
+    public static BigDecimal percentOf(BigDecimal amount, int percentage) {
+        return amount.multiply(BigDecimal.valueOf(percentage))
+                .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * To samo co {@link #percentOf} dla kwoty w groszach (wynik też w groszach, zaokrąglony HALF_UP)
+     */
+    public static long percentOfCents(long cents, int percentage) {
+        try {
+            long scaled = Math.multiplyExact(cents, percentage);
+            long rounded = Math.addExact(Math.absExact(scaled), 50) / 100;
+            return scaled < 0 ? -rounded : rounded;
+        } catch (ArithmeticException e) {
+            //bardzo duże kwoty - wynik (najwyżej 100% kwoty) i tak mieści się w long
+            return percentOf(BigDecimal.valueOf(cents, 2), percentage).unscaledValue().longValueExact();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reguły rabatowe policzone z góry dla każdego zamówienia (wiersz dopisywany raz, przy dodaniu zamówienia):
+ *  - karty z promocją dla zamówienia (indeksy w liście kart, rosnąco) i rabat za płatność każdą z nich,
+ *  - rabat za płatność w całości punktami,
+ *  - minimalna kwota punktów i rabat dla częściowej płatności punktami.
+ * Pętle optymalizatora tylko czytają tabele - nie szukają kart w promocjach i nie liczą procentów.
+ * Kwoty (zawsze zaokrąglone do groszy) są trzymane w groszach w tablicach long[], a karty wszystkich
+ * zamówień w jednej spłaszczonej tablicy z offsetami (jak w OrderTable) - wiersz nie tworzy żadnych obiektów.
+ */
+final class DiscountTable {
+
+    private static final int[] NO_CARDS = new int[0];
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final DiscountRules rules;
+    private final int pointsPercent;
+    private final int[] cardPercents;
+    private final Map<String, int[]> cardIndexesById = new HashMap<>();
+
+    private int size = 0;
+    //karty z promocją zamówienia i to [promoOffsets[i], promoOffsets[i + 1])
+    private int[] promoOffsets = new int[INITIAL_CAPACITY + 1];
+    private int[] promoCards = new int[INITIAL_CAPACITY];
+    private long[] promoDiscountCents = new long[INITIAL_CAPACITY];
+    private int promoCount = 0;
+    private long[] pointsDiscountCents = new long[INITIAL_CAPACITY];
+    private long[] minPointsCents = new long[INITIAL_CAPACITY];
+    private long[] partialPointsDiscountCents = new long[INITIAL_CAPACITY];
+    //bufor na karty dopisywanego wiersza
+    private int[] rowCards = new int[8];
+
+    DiscountTable(DiscountRules rules, PaymentMethod pointsMethod, List<PaymentMethod> cardMethods) {
+        this.rules = rules;
+        this.pointsPercent = pointsMethod.getDiscount();
+        this.cardPercents = new int[cardMethods.size()];
+        for (int i = 0; i < cardMethods.size(); i++) {
+            cardPercents[i] = cardMethods.get(i).getDiscount();
+            //powtórzone id - promocja dotyczy każdej z tych kart
+            int index = i;
+            cardIndexesById.merge(cardMethods.get(i).getId(), new int[]{i}, (indexes, added) -> {
+                int[] merged = Arrays.copyOf(indexes, indexes.length + 1);
+                merged[indexes.length] = index;
+                return merged;
+            });
+        }
+    }
+
+    /**
+     * Dopisuje wiersze dla zamówień, które jeszcze ich nie mają (indeks wiersza == indeks na liście)
+     */
+    void extendTo(List<Order> orders) {
+        while (size < orders.size()) {
+            addRow(orders.get(size));
+        }
+    }
+
+    /**
+     * Wiersze prosto z kolumn tabeli zamówień - nazwy promocji są zamieniane na karty raz na pozycję słownika,
+     * a rabaty liczone z groszy bez BigDecimal
+     */
+    void extendTo(OrderTable table) {
+        int[][] cardsByPromotion = new int[table.getPromotionDictionarySize()][];
+        for (int promotion = 0; promotion < cardsByPromotion.length; promotion++) {
+            int[] indexes = cardIndexesById.get(table.getPromotionName(promotion));
+            cardsByPromotion[promotion] = indexes == null ? NO_CARDS : indexes;
+        }
+
+        while (size < table.size()) {
+            int index = size;
+            int count = 0;
+            for (int position = 0; position < table.getPromotionCount(index); position++) {
+                for (int cardIndex : cardsByPromotion[table.getPromotion(index, position)]) {
+                    count = appendRowCard(count, cardIndex);
+                }
+            }
+            addRow(table.getValueCents(index), count);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int promoCardCount(int orderIndex) {
+        return promoOffsets[orderIndex + 1] - promoOffsets[orderIndex];
+    }
+
+    /**
+     * Indeks {@code position}-tej karty z promocją dla zamówienia (rosnąco)
+     */
+    int promoCard(int orderIndex, int position) {
+        return promoCards[promoOffsets[orderIndex] + position];
+    }
+
+    /**
+     * Rabat za płatność w całości kartą {@code promoCard(orderIndex, position)}
+     */
+    BigDecimal promoDiscount(int orderIndex, int position) {
+        return BigDecimal.valueOf(promoDiscountCents[promoOffsets[orderIndex] + position], 2);
+    }
+
+    BigDecimal promoDiscountForCard(int orderIndex, int cardIndex) {
+        int position = Arrays.binarySearch(promoCards, promoOffsets[orderIndex], promoOffsets[orderIndex + 1], cardIndex);
+        if (position < 0) {
+            throw new IllegalArgumentException("Card " + cardIndex + " has no promotion for order " + orderIndex);
+        }
+        return BigDecimal.valueOf(promoDiscountCents[position], 2);
+    }
+
+    BigDecimal pointsDiscount(int orderIndex) {
+        return BigDecimal.valueOf(pointsDiscountCents[orderIndex], 2);
+    }
+
+    BigDecimal minPointsAmount(int orderIndex) {
+        return BigDecimal.valueOf(minPointsCents[orderIndex], 2);
+    }
+
+    BigDecimal partialPointsDiscount(int orderIndex) {
+        return BigDecimal.valueOf(partialPointsDiscountCents[orderIndex], 2);
+    }
+
+    private void addRow(Order order) {
+        //promocje -> indeksy kart (nieznane id pomijamy)
+        int count = 0;
+        for (String promotion : order.getPromotions()) {
+            int[] indexes = cardIndexesById.get(promotion);
+            if (indexes == null) {
+                continue;
+            }
+            for (int cardIndex : indexes) {
+                count = appendRowCard(count, cardIndex);
+            }
+        }
+
+        BigDecimal value = order.getValue();
+        //wartość w pełnych groszach (zwykle) - rabaty liczone jak dla tabeli kolumnowej, bez BigDecimal
+        if (value.scale() <= 2) {
+            try {
+                addRow(value.movePointRight(2).longValueExact(), count);
+                return;
+            } catch (ArithmeticException e) {
+                //nie mieści się w long - liczymy na BigDecimal
+            }
+        }
+        int row = startRow(count);
+        for (int i = promoOffsets[row]; i < promoCount; i++) {
+            promoDiscountCents[i] = cents(DiscountRules.percentOf(value, cardPercents[promoCards[i]]));
+        }
+        pointsDiscountCents[row] = cents(DiscountRules.percentOf(value, pointsPercent));
+        minPointsCents[row] = cents(DiscountRules.percentOf(value, rules.partialPointsThreshold()));
+        partialPointsDiscountCents[row] = rules.partialPointsDiscount() == rules.partialPointsThreshold()
+                ? minPointsCents[row]
+                : cents(DiscountRules.percentOf(value, rules.partialPointsDiscount()));
+    }
+
+    private void addRow(long valueCents, int count) {
+        int row = startRow(count);
+        for (int i = promoOffsets[row]; i < promoCount; i++) {
+            promoDiscountCents[i] = DiscountRules.percentOfCents(valueCents, cardPercents[promoCards[i]]);
+        }
+        pointsDiscountCents[row] = DiscountRules.percentOfCents(valueCents, pointsPercent);
+        minPointsCents[row] = DiscountRules.percentOfCents(valueCents, rules.partialPointsThreshold());
+        partialPointsDiscountCents[row] = rules.partialPointsDiscount() == rules.partialPointsThreshold()
+                ? minPointsCents[row]
+                : DiscountRules.percentOfCents(valueCents, rules.partialPointsDiscount());
+    }
+
+    private int appendRowCard(int count, int cardIndex) {
+        if (count == rowCards.length) {
+            rowCards = Arrays.copyOf(rowCards, count * 2);
+        }
+        rowCards[count] = cardIndex;
+        return count + 1;
+    }
+
+    /**
+     * Nowy wiersz z kartami z bufora (pierwsze {@code count}, mogą się powtarzać) - rabaty uzupełnia wywołujący
+     */
+    private int startRow(int count) {
+        if (size == pointsDiscountCents.length) {
+            grow();
+        }
+
+        //bez duplikatów, rosnąco jak kolejność kart
+        Arrays.sort(rowCards, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || rowCards[unique - 1] != rowCards[i]) {
+                rowCards[unique++] = rowCards[i];
+            }
+        }
+        if (promoCount + unique > promoCards.length) {
+            int capacity = Math.max(promoCards.length * 2, promoCount + unique);
+            promoCards = Arrays.copyOf(promoCards, capacity);
+            promoDiscountCents = Arrays.copyOf(promoDiscountCents, capacity);
+        }
+        System.arraycopy(rowCards, 0, promoCards, promoCount, unique);
+        promoCount += unique;
+
+        int row = size++;
+        promoOffsets[row + 1] = promoCount;
+        return row;
+    }
+
+    /**
+     * Kwota po {@link DiscountRules#percentOf} ma zawsze skalę 2
+     */
+    private static long cents(BigDecimal amount) {
+        try {
+            return amount.unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Discount " + amount.toPlainString() + " cannot be stored in cents", e);
+        }
+    }
+
+    private void grow() {
+        int capacity = pointsDiscountCents.length * 2;
+        promoOffsets = Arrays.copyOf(promoOffsets, capacity + 1);
+        pointsDiscountCents = Arrays.copyOf(pointsDiscountCents, capacity);
+        minPointsCents = Arrays.copyOf(minPointsCents, capacity);
+        partialPointsDiscountCents = Arrays.copyOf(partialPointsDiscountCents, capacity);
+    }
+}
@@ -1,13 +1,20 @@
 package com.company.paymentoptimizer.algo;
 
+import com.company.paymentoptimizer.io.CheckpointLog;
+import com.company.paymentoptimizer.io.ReportWriter;
+import com.company.paymentoptimizer.io.ResultCache;
 import com.company.paymentoptimizer.model.Allocation;
 import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
 import com.company.paymentoptimizer.model.PaymentMethod;
 import com.company.paymentoptimizer.model.PaymentOption;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -44,15 +51,67 @@ import java.util.stream.Collectors;
 
 public class Optimizer {
 
+    /**
+     * Wersja algorytmu - trzeba ją zmienić przy każdej zmianie, która może dać inne alokacje
+     * (unieważnia zapisane wyniki w ResultCache)
+     */
+    public static final String SOLVER_VERSION = "greedy-1";
+
     private final List<Order> orders;
+    //zamówienia w postaci kolumnowej (null == zwykła lista); wtedy orders to widok tworzący Order na żądanie
+    private final OrderTable orderTable;
     private final List<PaymentMethod> paymentMethods;
     private final PaymentMethod pointsMethod;
     private final List<PaymentMethod> cardMethods;
+    private final DiscountRules rules;
+    //reguły rabatowe przeliczone na tabele per zamówienie (wiersz == indeks w orders)
+    private DiscountTable discounts;
+    //kolejność fazy 2 przygotowana wcześniej (null == sortujemy przy optymalizacji)
+    private int[] preparedValueOrder;
+    //liczba alokacji zatwierdzonych w fazie 1 (są na początku listy wyniku)
+    private int fullCardAllocationCount;
     private List<Allocation> allocations = new ArrayList<>();
+    //opcjonalny zapis decyzji (null == wyłączony)
+    private DecisionTrace trace;
+    //opcjonalne punkty kontrolne (null == wyłączone)
+    private CheckpointLog checkpointLog;
+    private int checkpointInterval;
+    private CheckpointLog.Checkpoint resumeCheckpoint;
+    //kandydaci do fazy 1 - zbierani przy dodawaniu zamówień albo na początku optymalizacji
+    private final List<PaymentOption> potentialCardOptions = new ArrayList<>();
+    private int ordersWithCollectedOptions = 0;
+    //opcjonalny limit pamięci na kandydatów fazy 1 (null == wszyscy w pamięci)
+    private SpillingCandidateBuffer spilledCardOptions;
+    //opcjonalny odbiorca zatwierdzanych alokacji (np. strumieniowe wypisywanie wyniku)
+    private Consumer<Allocation> allocationListener;
+    //komunikat o zamówieniu, którego nie dało się opłacić (domyślnie na stdout przed raportem)
+    private Consumer<Order> unallocatedOrderListener = order -> System.out.println(unallocatedMessage(order));
 
     //teraz mamy ładnie wyizolowane metody które się nie zmienia tak samo jak orders dlatego final
     public Optimizer(List<Order> orders, List<PaymentMethod> paymentMethods) {
-        this.orders = new ArrayList<>(orders);
+        this(orders, paymentMethods, DiscountRules.STANDARD);
+    }
+
+    public Optimizer(List<Order> orders, List<PaymentMethod> paymentMethods, DiscountRules rules) {
+        this(new ArrayList<>(orders), null, paymentMethods, rules);
+    }
+
+    /**
+     * Optymalizacja zamówień z tabeli kolumnowej - tabele rabatów i kolejność fazy 2 są liczone prosto
+     * z kolumn, a obiekty Order powstają tylko dla zamówień, dla których budujemy opcje płatności
+     */
+    public Optimizer(OrderTable orders, List<PaymentMethod> paymentMethods) {
+        this(orders, paymentMethods, DiscountRules.STANDARD);
+    }
+
+    public Optimizer(OrderTable orders, List<PaymentMethod> paymentMethods, DiscountRules rules) {
+        this(orders.asOrders(), orders, paymentMethods, rules);
+    }
+
+    private Optimizer(List<Order> orders, OrderTable orderTable, List<PaymentMethod> paymentMethods,
+                      DiscountRules rules) {
+        this.orders = orders;
+        this.orderTable = orderTable;
         this.paymentMethods = new ArrayList<>(paymentMethods);
         this.pointsMethod = paymentMethods.stream()
                 .filter(PaymentMethod::isPointsMethod)
@@ -62,6 +121,132 @@ public class Optimizer {
         this.cardMethods = paymentMethods.stream()
                 .filter(pm -> !pm.isPointsMethod())
                 .collect(Collectors.toList());
+        this.rules = rules;
+        this.discounts = new DiscountTable(rules, pointsMethod, cardMethods);
+    }
+
+    /**
+     * Hash wejścia (zamówienia, metody, reguły rabatowe i wersja algorytmu) zapisywany w nagłówku
+     * punktów kontrolnych - wznowienie z innym wejściem jest odrzucane
+     */
+    public String inputHash() {
+        return ResultCache.inputHash(SOLVER_VERSION + "/" + rules, orders, paymentMethods);
+    }
+
+    /**
+     * Włącza zapisywanie decyzji do bufora cyklicznego (null wyłącza)
+     */
+    public void setDecisionTrace(DecisionTrace trace) {
+        this.trace = trace;
+    }
+
+    public DecisionTrace getDecisionTrace() {
+        return trace;
+    }
+
+    /**
+     * Dodanie zamówienia po utworzeniu optymalizatora (np. w trakcie strumieniowego parsowania wejścia).
+     * Kandydaci do płatności kartą z promocją są generowani od razu, więc optimize() ma już tylko
+     * posortowanie i zatwierdzenie.
+     */
+    public void addOrder(Order order) {
+        if (orderTable != null) {
+            throw new IllegalStateException("Orders cannot be added to an optimizer built from an order table");
+        }
+        orders.add(order);
+        collectOutstandingFullCardOptions();
+    }
+
+    /**
+     * Kandydaci fazy 1 przygotowani wcześniej (np. raz dla wielu scenariuszy w ScenarioEngine) - muszą
+     * odnosić się do zamówień i metod tego optymalizatora i być już posortowani, więc sortowanie jest liniowe.
+     * Kandydaci nie muszą być filtrowani po limicie - przy zatwierdzaniu i tak sprawdzamy dostępne środki.
+     */
+    void usePreparedCardOptions(List<PaymentOption> sortedOptions) {
+        if (ordersWithCollectedOptions > 0 || spilledCardOptions != null) {
+            throw new IllegalStateException("Card options were already collected");
+        }
+        potentialCardOptions.addAll(sortedOptions);
+        ordersWithCollectedOptions = orders.size();
+    }
+
+    /**
+     * Tabela rabatów policzona wcześniej dla tych samych zamówień, reguł i rabatów metod (np. wspólna dla
+     * scenariuszy w ScenarioEngine) - po wypełnieniu jest tylko czytana, więc może być współdzielona między wątkami
+     */
+    void usePreparedDiscounts(DiscountTable preparedDiscounts) {
+        this.discounts = preparedDiscounts;
+    }
+
+    /**
+     * Indeksy zamówień malejąco po wartości (stabilnie), policzone wcześniej - faza 2 ich nie sortuje
+     */
+    void usePreparedValueOrder(int[] byValue) {
+        if (byValue.length != orders.size()) {
+            throw new IllegalArgumentException("Value order covers " + byValue.length + " of " + orders.size() + " orders");
+        }
+        this.preparedValueOrder = byValue;
+    }
+
+    int getFullCardAllocationCount() {
+        return fullCardAllocationCount;
+    }
+
+    /**
+     * Ogranicza pamięć zajmowaną przez kandydatów fazy 1 - nadmiar jest sortowany i zrzucany do plików
+     * tymczasowych w {@code tempDir}, a przy zatwierdzaniu scalany (k-way merge). Wynik jest taki sam
+     * jak bez limitu. Trzeba wywołać przed dodaniem zamówień.
+     */
+    public void setCandidateMemoryBudget(long budgetBytes, Path tempDir) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Candidate memory budget must be positive: " + budgetBytes);
+        }
+        if (ordersWithCollectedOptions > 0) {
+            throw new IllegalStateException("Candidate memory budget must be set before orders are added");
+        }
+        this.spilledCardOptions = new SpillingCandidateBuffer(budgetBytes, tempDir, this::createFullCardOption);
+    }
+
+    /**
+     * Każda zatwierdzona alokacja jest od razu przekazywana do odbiorcy (w kolejności zatwierdzania)
+     */
+    public void setAllocationListener(Consumer<Allocation> allocationListener) {
+        this.allocationListener = allocationListener;
+    }
+
+    /**
+     * Odbiorca zamówień, których nie dało się opłacić - np. gdy raport jest wypisywany strumieniowo na stdout,
+     * komunikaty trzeba skierować gdzie indziej, żeby nie wpadały w środek raportu
+     */
+    public void setUnallocatedOrderListener(Consumer<Order> unallocatedOrderListener) {
+        this.unallocatedOrderListener = Objects.requireNonNull(unallocatedOrderListener);
+    }
+
+    /**
+     * Komunikat domyślnego odbiorcy zamówień bez alokacji (np. do powtórzenia przy wyniku z cache)
+     */
+    public static String unallocatedMessage(Order order) {
+        return "Unallocated order" + order.getId();
+    }
+
+    /**
+     * Włącza zapisywanie punktów kontrolnych co {@code interval} przetworzonych pozycji w każdej fazie
+     * (oraz zawsze na końcu fazy)
+     */
+    public void enableCheckpoints(CheckpointLog checkpointLog, int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        this.checkpointLog = checkpointLog;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Wznowienie z punktu kontrolnego - alokacje i wykorzystanie limitów są odtwarzane, a optymalizacja
+     * kontynuowana od zapisanej pozycji, co daje ten sam wynik co nieprzerwany przebieg
+     */
+    public void resumeFrom(CheckpointLog.Checkpoint checkpoint) {
+        this.resumeCheckpoint = checkpoint;
     }
 
     /**
@@ -69,8 +254,30 @@ public class Optimizer {
      * @return allocations
      */
     public List<Allocation> optimize() {
-        allocateFullCardOptions();
-        allocateRemainingOrders();
+        if (checkpointLog != null) {
+            try {
+                checkpointLog.start(inputHash());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write checkpoint", e);
+            }
+        }
+        int phase = 1;
+        int position = 0;
+        if (resumeCheckpoint != null) {
+            phase = resumeCheckpoint.phase();
+            position = resumeCheckpoint.position();
+        }
+
+        if (phase == 1) {
+            allocateFullCardOptions(position);
+        } else {
+            //faza 1 już zakończona - kandydatów nie musimy nawet generować
+            restoreCheckpoint();
+        }
+        if (phase <= 2) {
+            allocateRemainingOrders(phase == 2 ? position : 0);
+            checkpoint(CheckpointLog.PHASE_DONE, 0);
+        }
         return allocations;
     }
 
@@ -79,34 +286,11 @@ public class Optimizer {
      */
     public String generateReport(List<Allocation> allocations) {
         StringBuilder report = new StringBuilder();
-        Map<String, BigDecimal> paymentUsage = new HashMap<>();
-
+        ReportWriter writer = new ReportWriter(report);
         for (Allocation allocation : allocations) {
-            report.append(allocation).append("\n\n");
-
-            paymentUsage.merge(
-                    allocation.getPrimaryMethod().getId(),
-                    allocation.getAmountFromPrimaryMethod(),
-                    BigDecimal::add
-            );
-
-            allocation.getSecondaryPayment().ifPresent(secondary ->
-                    paymentUsage.merge(
-                            secondary.paymentMethod().getId(),
-                            secondary.amount(),
-                            BigDecimal::add
-                    )
-            );
-        }
-
-        report.append("=== Result ===\n");
-        paymentUsage.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(entry -> {
-                    BigDecimal total = entry.getValue().setScale(2, RoundingMode.HALF_UP);
-                    report.append(entry.getKey()).append(": ").append(total).append("\n");
-                });
-
+            writer.append(allocation);
+        }
+        writer.finish();
         return report.toString();
 
     }
@@ -116,59 +300,179 @@ public class Optimizer {
      * Zachłanne alokowanie orders które można opłacic kartą z promotions
      * @return
      */
-    private void allocateFullCardOptions(){
+    private void allocateFullCardOptions(int startPosition){
         //List<Allocation> allocations = new ArrayList<>();
         Set<String> allocatedOrders = new HashSet<>();
 
-        List<PaymentOption> potentialCardOptions = new ArrayList<>();
-
-        for (Order order : orders) {
-            for (PaymentMethod card : cardMethods) {
-                //jak karta jest w promotions oraz możemy nią pokryć całe zamówienie
-                if (order.getPromotions().contains(card.getId()) && card.canFullyCover(order.getValue())) {
-                    BigDecimal discount = calculateDiscount(order.getValue(), card.getDiscount());
-                    BigDecimal amountAfterDiscount = order.getValue().subtract(discount);
+        collectOutstandingFullCardOptions();
 
-                    potentialCardOptions.add(new PaymentOption(
-                            order,
-                            card,
-                            amountAfterDiscount,
-                            Optional.empty(),
-                            BigDecimal.ZERO,
-                            discount
-                    ));
-                }
-            }
+        //sortujemy malejąco po wielkości rabatu
+        Iterator<PaymentOption> sortedCardOptions;
+        if (spilledCardOptions != null) {
+            sortedCardOptions = spilledCardOptions.sortedIterator();
+        } else {
+            Collections.sort(potentialCardOptions);
+            sortedCardOptions = potentialCardOptions.iterator();
         }
 
-        //sortujemy malejąco po wielkości rabatu
-        Collections.sort(potentialCardOptions);
+        //wznawiając odtwarzamy stan dopiero po wygenerowaniu kandydatów (generowanie patrzy na limity),
+        //żeby pozycje na posortowanej liście były takie same jak w przerwanym przebiegu
+        restoreCheckpoint();
+        for (Allocation allocation : allocations) {
+            allocatedOrders.add(allocation.getOrder().getId());
+        }
 
-        //przydzielamy zamówenia do kart
-        for (PaymentOption paymentOption : potentialCardOptions) {
+        //przydzielamy zamówenia do kart (wznawiając pomijamy już przetworzone pozycje)
+        for (int i = 0; sortedCardOptions.hasNext(); i++) {
+            PaymentOption paymentOption = sortedCardOptions.next();
+            if (i < startPosition) {
+                continue;
+            }
             Order order = paymentOption.getOrder();
             PaymentMethod card = paymentOption.getPrimaryMethod();
+            //zamówienie z OrderTable tworzy id przy każdym getId() - odczytujemy raz
+            String orderId = order.getId();
 
             //upewniamy się że nie zaalokowaliśmy już danego order
-            if (!allocatedOrders.contains(order.getId()) && card.canFullyCover(order.getValue())) {
+            if (!allocatedOrders.contains(orderId) && card.canFullyCover(order.getValue())) {
                 Allocation allocation = paymentOption.toAllocation();
-                allocations.add(allocation);
-                allocatedOrders.add(order.getId());
+                commitAllocation(allocation);
+                allocatedOrders.add(orderId);
+                if (trace != null) {
+                    recordOption(DecisionTrace.WINNER, 1, paymentOption);
+                }
                 //jeszcze zabieramy z dostępnych środków na karcie to za ile opłaciliśmy
                 card.addUsed(paymentOption.getPrimaryAmount());
+            } else if (trace != null && !allocatedOrders.contains(orderId)) {
+                //limit karty został zużyty przez wcześniejsze (lepsze) zamówienia
+                recordOption(DecisionTrace.REJECTED, 1, paymentOption);
             }
 
+            if (checkpointLog != null && (i + 1) % checkpointInterval == 0) {
+                checkpoint(1, i + 1);
+            }
         }
 
+        //kandydaci nie są już potrzebni - zwalniamy pamięć (i pliki tymczasowe) przed fazą 2
+        potentialCardOptions.clear();
+        if (spilledCardOptions != null) {
+            try {
+                spilledCardOptions.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not remove spilled candidates", e);
+            }
+        }
+        fullCardAllocationCount = allocations.size();
+        checkpoint(2, 0);
         //return allocations;
     }
 
+    /**
+     * Generowanie kandydatów (zamówienie opłacone w całości kartą z promocją) dla zamówień,
+     * które jeszcze nie były przetworzone
+     */
+    private void collectOutstandingFullCardOptions() {
+        extendDiscounts();
+        for (; ordersWithCollectedOptions < orders.size(); ordersWithCollectedOptions++) {
+            int orderIndex = ordersWithCollectedOptions;
+            //tylko karty z promotions (z tabeli, w kolejności kart)
+            int promoCardCount = discounts.promoCardCount(orderIndex);
+            if (promoCardCount == 0) {
+                continue;
+            }
+            Order order = orders.get(orderIndex);
+            for (int position = 0; position < promoCardCount; position++) {
+                int cardIndex = discounts.promoCard(orderIndex, position);
+                PaymentMethod card = cardMethods.get(cardIndex);
+                //jak możemy kartą pokryć całe zamówienie
+                if (card.canFullyCover(order.getValue())) {
+                    PaymentOption option = createFullCardOption(order, card, discounts.promoDiscount(orderIndex, position));
+                    if (trace != null && trace.recordsCandidates()) {
+                        recordOption(DecisionTrace.CANDIDATE, 1, option);
+                    }
+
+                    if (spilledCardOptions != null) {
+                        spilledCardOptions.add(option, orderIndex, cardIndex);
+                    } else {
+                        potentialCardOptions.add(option);
+                    }
+                } else if (trace != null) {
+                    trace.record(DecisionTrace.REJECTED, 1, order, card, null, order.getValue(), BigDecimal.ZERO);
+                }
+            }
+        }
+    }
+
+    private PaymentOption createFullCardOption(int orderIndex, int cardIndex) {
+        return createFullCardOption(orders.get(orderIndex), cardMethods.get(cardIndex),
+                discounts.promoDiscountForCard(orderIndex, cardIndex));
+    }
+
+    private PaymentOption createFullCardOption(Order order, PaymentMethod card, BigDecimal discount) {
+        BigDecimal amountAfterDiscount = order.getValue().subtract(discount);
+
+        return new PaymentOption(
+                order,
+                card,
+                amountAfterDiscount,
+                Optional.empty(),
+                BigDecimal.ZERO,
+                discount
+        );
+    }
+
+    /**
+     * Dodanie alokacji do wyniku (i do pliku punktów kontrolnych jeśli włączony)
+     */
+    private void commitAllocation(Allocation allocation) {
+        allocations.add(allocation);
+        if (allocationListener != null) {
+            allocationListener.accept(allocation);
+        }
+        if (checkpointLog != null) {
+            try {
+                checkpointLog.append(allocation);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write checkpoint", e);
+            }
+        }
+    }
+
+    private void checkpoint(int phase, int position) {
+        if (checkpointLog == null) {
+            return;
+        }
+        try {
+            checkpointLog.commit(phase, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint", e);
+        }
+    }
+
+    /**
+     * Odtworzenie zatwierdzonych alokacji i wykorzystania limitów z punktu kontrolnego (tylko raz)
+     */
+    private void restoreCheckpoint() {
+        if (resumeCheckpoint == null) {
+            return;
+        }
+        for (Allocation allocation : resumeCheckpoint.allocations()) {
+            allocations.add(allocation);
+            if (allocationListener != null) {
+                allocationListener.accept(allocation);
+            }
+            allocation.getPrimaryMethod().addUsed(allocation.getAmountFromPrimaryMethod());
+            allocation.getSecondaryPayment().ifPresent(secondary ->
+                    secondary.paymentMethod().addUsed(secondary.amount()));
+        }
+        resumeCheckpoint = null;
+    }
+
     /**
      * Pomocnicza metoda do obliczania discount
      */
     private BigDecimal calculateDiscount(BigDecimal amount, int discountPercentage) {
-        return amount.multiply(BigDecimal.valueOf(discountPercentage))
-                .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+        return DiscountRules.percentOf(amount, discountPercentage);
     }
 
 
@@ -178,21 +482,34 @@ public class Optimizer {
      * potem punkty + karta, a na koniec ratujemy się w całości kartą bez rabatów
      */
     public void allocateRemainingOrders(){
+        allocateRemainingOrders(0);
+    }
+
+    private void allocateRemainingOrders(int startPosition){
         Set<String> allocatedOrderIds = allocations.stream()
                 .map(a -> a.getOrder().getId())
                 .collect(Collectors.toSet());
 
         //List<Order> unallocatedOrders = new ArrayList<>(); //jak zachłanny zawiedzie --> nie dokończone ze wzgledu na czas
 
-        orders.sort(Comparator.comparing(Order::getValue).reversed());
+        //kolejność malejąco po wartości jako permutacja indeksów - wiersze tabel rabatów zostają na miejscu
+        extendDiscounts();
+        int[] byValue = sortByValueDescending();
+
+        //limity kart jako tablica prymitywów - "które karty pokryją kwotę" to jeden skan
+        CardCapacityIndex capacityIndex = new CardCapacityIndex(cardMethods);
+        int[] coveringCards = new int[cardMethods.size()];
 
-        for (Order order : orders) {
-            if (!allocatedOrderIds.contains(order.getId())) {
+        for (int i = startPosition; i < byValue.length; i++) {
+            int orderIndex = byValue[i];
+            if (!allocatedOrderIds.contains(orderId(orderIndex))) {
+                Order order = orders.get(orderIndex);
                 List<PaymentOption> potentialOrderOptions = new ArrayList<>();
+                int rejectedWithPoints = -1;
 
                 //1. PUNKTY 100%
                 if (pointsMethod.canFullyCover(order.getValue())) {
-                    BigDecimal discount = calculateDiscount(order.getValue(), pointsMethod.getDiscount());
+                    BigDecimal discount = discounts.pointsDiscount(orderIndex);
                     BigDecimal amountAfterDiscount = order.getValue().subtract(discount);
 
                     potentialOrderOptions.add(new PaymentOption(
@@ -203,78 +520,144 @@ public class Optimizer {
                             BigDecimal.ZERO,
                             discount
                     ));
+                } else if (trace != null) {
+                    trace.record(DecisionTrace.REJECTED, 2, order, pointsMethod, null, order.getValue(), BigDecimal.ZERO);
                 }
 
                 //2. Punkty (+10% wartości zamówienia) + Karta ==> 10% rabatu
                 if (pointsMethod.getAvailable().compareTo(BigDecimal.ZERO) > 0) {
                     //musimy sprawdzić czy jesteśmy w stanie pokryć 10% zamówienia
-                    BigDecimal minAmountForPoints = calculateDiscount(order.getValue(), 10);
+                    BigDecimal minAmountForPoints = discounts.minPointsAmount(orderIndex);
                     BigDecimal pointsToUse = pointsMethod.getAvailable();
 
                     if (pointsToUse.compareTo(order.getValue()) > 0) {
                         pointsToUse = order.getValue();
                     }
 
-                    if (pointsMethod.getAvailable().compareTo(minAmountForPoints) >= 0) {
-                        for (PaymentMethod card : cardMethods) {
-                            BigDecimal totalDiscount = calculateDiscount(order.getValue(), 10);
-                            BigDecimal discountedTotal = order.getValue().subtract(totalDiscount);
-                            BigDecimal remainingValue = discountedTotal.subtract(pointsToUse);
-
-                            //jeśli kartą jesteśmy w stanie pokryć pozostałą część zamówienia
-                            if (remainingValue.compareTo(BigDecimal.ZERO) > 0 && card.canFullyCover(remainingValue)) {
-                                potentialOrderOptions.add(new PaymentOption(
-                                        order,
-                                        pointsMethod,
-                                        pointsToUse,
-                                        Optional.of(card),
-                                        remainingValue,
-                                        totalDiscount
-                                ));
-                            }
+                    BigDecimal totalDiscount = discounts.partialPointsDiscount(orderIndex);
+                    BigDecimal discountedTotal = order.getValue().subtract(totalDiscount);
+                    BigDecimal remainingValue = discountedTotal.subtract(pointsToUse);
+
+                    //jeśli kartą jesteśmy w stanie pokryć pozostałą część zamówienia
+                    if (pointsMethod.getAvailable().compareTo(minAmountForPoints) >= 0
+                            && remainingValue.compareTo(BigDecimal.ZERO) > 0) {
+                        int covering = capacityIndex.collectCovering(remainingValue, coveringCards);
+                        for (int c = 0; c < covering; c++) {
+                            potentialOrderOptions.add(new PaymentOption(
+                                    order,
+                                    pointsMethod,
+                                    pointsToUse,
+                                    Optional.of(cardMethods.get(coveringCards[c])),
+                                    remainingValue,
+                                    totalDiscount
+                            ));
                         }
+                        rejectedWithPoints = cardMethods.size() - covering;
                     }
                 }
 
                 //3. Sama karta (ratunek jak juz pkt ani zniżek nie mamy)
-                for (PaymentMethod card : cardMethods) {
-                    if (card.canFullyCover(order.getValue())) {
-                        potentialOrderOptions.add(new PaymentOption(
-                                order,
-                                card,
-                                order.getValue(),
-                                Optional.empty(),
-                                BigDecimal.ZERO,
-                                BigDecimal.ZERO
-                        ));
-                    }
+                int covering = capacityIndex.collectCovering(order.getValue(), coveringCards);
+                for (int c = 0; c < covering; c++) {
+                    potentialOrderOptions.add(new PaymentOption(
+                            order,
+                            cardMethods.get(coveringCards[c]),
+                            order.getValue(),
+                            Optional.empty(),
+                            BigDecimal.ZERO,
+                            BigDecimal.ZERO
+                    ));
+                }
+                int rejected = cardMethods.size() - covering;
+                if (trace != null && (rejected > 0 || rejectedWithPoints > 0)) {
+                    trace.recordRejectedCards(2, order, rejected, rejectedWithPoints, cardMethods.size());
                 }
 
                 //wybieramy najlepszą opcje dla zamówienia
                 if (!potentialOrderOptions.isEmpty()) {
                     Collections.sort(potentialOrderOptions);
                     PaymentOption bestOption = potentialOrderOptions.getFirst();
+                    if (trace != null) {
+                        traceOrderDecision(potentialOrderOptions);
+                    }
 
                     //aktualizujemy limity
                     bestOption.getPrimaryMethod().addUsed(bestOption.getPrimaryAmount());
+                    capacityIndex.refresh(bestOption.getPrimaryMethod());
                     if (bestOption.getSecondaryMethod().isPresent()) {
                         bestOption.getSecondaryMethod().get().addUsed(bestOption.getSecondaryAmount());
+                        capacityIndex.refresh(bestOption.getSecondaryMethod().get());
                     }
 
                     //dodajemy do allocations
-                    allocations.add(bestOption.toAllocation());
+                    commitAllocation(bestOption.toAllocation());
                     allocatedOrderIds.add(order.getId());
                 }else{
-                    System.out.println("Unallocated order" + order.getId());
+                    unallocatedOrderListener.accept(order);
                     //unallocatedOrders.add(order); //todo::
                 }
 
             }
+
+            if (checkpointLog != null && (i + 1) % checkpointInterval == 0) {
+                checkpoint(2, i + 1);
+            }
         }
         //todo: unallocatedOrders --> relokacja i poszukiwania innych możliwości lokalnie --> dużo wiecej kodu i czasu potrzebne
 
     }
 
+    private String orderId(int orderIndex) {
+        return orderTable != null ? orderTable.getId(orderIndex) : orders.get(orderIndex).getId();
+    }
+
+    private void extendDiscounts() {
+        if (orderTable != null) {
+            discounts.extendTo(orderTable);
+        } else {
+            discounts.extendTo(orders);
+        }
+    }
+
+    /**
+     * Indeksy zamówień posortowane malejąco po wartości (stabilnie - remisy w kolejności wejścia).
+     * Sortowanie pozycyjne po groszach; komparator BigDecimal tylko gdy wartości nie mieszczą się w long.
+     */
+    private int[] sortByValueDescending() {
+        if (preparedValueOrder != null) {
+            return preparedValueOrder;
+        }
+        if (orderTable == null) {
+            return ValueSort.descending(orders.size(), i -> orders.get(i).getValue());
+        }
+        long[] keys = new long[orderTable.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = orderTable.getValueCents(i);
+        }
+        return ValueSort.descending(keys);
+    }
+
+    /**
+     * Zapis zwycięzcy i drugiej w kolejności opcji, a wszystkich rozważanych opcji tylko gdy trace o to prosi
+     * (przed aktualizacją limitów, więc available to stan w chwili decyzji)
+     */
+    private void traceOrderDecision(List<PaymentOption> sortedOptions) {
+        if (trace.recordsCandidates()) {
+            for (PaymentOption option : sortedOptions) {
+                recordOption(DecisionTrace.CANDIDATE, 2, option);
+            }
+        }
+        recordOption(DecisionTrace.WINNER, 2, sortedOptions.getFirst());
+        if (sortedOptions.size() > 1) {
+            recordOption(DecisionTrace.RUNNER_UP, 2, sortedOptions.get(1));
+        }
+    }
+
+    private void recordOption(byte type, int phase, PaymentOption option) {
+        trace.record(type, phase, option.getOrder(), option.getPrimaryMethod(),
+                option.getSecondaryMethod().orElse(null), option.getPrimaryAmount(), option.getTotalDiscount());
+    }
+
     //todo:: do zrobienia ale czasu zabrakło działa za to algorytm zachłanny który powienien w znacznej wiekszosci
     //todo:: sytuacji znaleźć rozwiazanie -- to co niżej to własnie nie dokończone szykanie i relokowanie zapłaty
     //albo w ogóle można by wielowątkowo policzyc te 10 000 000 opcji i potem z nich wybierać
@@ -0,0 +1,399 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.io.CheckpointLog;
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import com.company.paymentoptimizer.model.PaymentOption;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Zamówienia i rabaty metod płatności przygotowane raz dla wielu przebiegów {@link Optimizer} różniących się
+ * limitami (scenariusze "co jeśli", scalanie wyników shardów):
+ *  - tabela rabatów i kolejność fazy 2 (indeksy zamówień malejąco po wartości, {@link ValueSort}),
+ *  - posortowani kandydaci fazy 1 (zamówienie w całości kartą z promocją) w postaci indeksów.
+ * Gotowe rozwiązanie policzone przy innych limitach ({@link Reference}) jest odtwarzane w kolejności decyzji
+ * optymalizatora aż do pierwszej decyzji, która przy nowych limitach mogłaby wypaść inaczej (metoda pokrywa
+ * albo nie pokrywa kwoty, inna kwota punktów). Decyzja zależy od limitów tylko przez te porównania, więc do tego
+ * miejsca alokacje są przepisywane, a dalej liczy zwykły {@link Optimizer} wznowiony jak z punktu kontrolnego -
+ * wynik jest taki sam jak osobne uruchomienie optymalizatora z nowymi limitami.
+ */
+public class ReplayableInput {
+
+    /**
+     * Rozwiązanie do odtworzenia zamienione raz na indeksy: alokacja każdego zamówienia i indeksy jej metod
+     */
+    public static final class Reference {
+        private final BigDecimal[][] groupLimits;
+        private final int[] groupOfOrder;
+        private final Allocation[] allocations;
+        private final int[] primaryMethods;
+        private final int[] secondaryMethods;
+
+        private Reference(BigDecimal[][] groupLimits, int[] groupOfOrder, Allocation[] allocations,
+                          int[] primaryMethods, int[] secondaryMethods) {
+            this.groupLimits = groupLimits;
+            this.groupOfOrder = groupOfOrder;
+            this.allocations = allocations;
+            this.primaryMethods = primaryMethods;
+            this.secondaryMethods = secondaryMethods;
+        }
+    }
+
+    private final List<Order> orders;
+    private final List<String> methodIds;
+    private final int pointsIndex;
+    private final int pointsPercent;
+    //indeksy metod będących kartami (kolejność kart optymalizatora) i ich rabaty
+    private final int[] cardIndexes;
+    private final int[] cardPercents;
+
+    private final DiscountTable discounts;
+    private final int[] byValue;
+
+    //posortowani kandydaci fazy 1: indeks zamówienia (na wejściu) i indeks karty
+    private final int[] candidateOrders;
+    private final int[] candidateCards;
+    private final BigDecimal[] candidateAmounts;
+    private final BigDecimal[] candidateDiscounts;
+
+    //odtwarzanie porównuje zamówienia po obiekcie, optymalizator po id - przy powtórzonych id liczymy od zera
+    private final boolean replayable;
+
+    /**
+     * @param paymentMethods metody płatności (liczą się id i rabaty, limity mogą być dowolne)
+     */
+    public ReplayableInput(List<Order> orders, List<PaymentMethod> paymentMethods) {
+        this.orders = List.copyOf(orders);
+        this.methodIds = paymentMethods.stream().map(PaymentMethod::getId).toList();
+
+        int points = -1;
+        List<PaymentMethod> cards = new ArrayList<>();
+        List<Integer> cardIndexList = new ArrayList<>();
+        for (int i = 0; i < paymentMethods.size(); i++) {
+            PaymentMethod method = paymentMethods.get(i);
+            if (!method.isPointsMethod()) {
+                cards.add(method);
+                cardIndexList.add(i);
+            } else if (points < 0) {
+                points = i;
+            }
+        }
+        if (points < 0) {
+            throw new IllegalArgumentException("No points method found");
+        }
+        this.pointsIndex = points;
+        this.pointsPercent = paymentMethods.get(pointsIndex).getDiscount();
+        this.cardIndexes = cardIndexList.stream().mapToInt(Integer::intValue).toArray();
+        this.cardPercents = cards.stream().mapToInt(PaymentMethod::getDiscount).toArray();
+
+        this.discounts = new DiscountTable(DiscountRules.STANDARD, paymentMethods.get(pointsIndex), cards);
+        discounts.extendTo(this.orders);
+        this.byValue = ValueSort.descending(this.orders.size(), i -> this.orders.get(i).getValue());
+
+        //kandydaci w kolejności generowania przez Optimizer (zamówienia z wejścia x karty), potem stabilne sortowanie
+        List<PaymentOption> options = new ArrayList<>();
+        List<int[]> indexes = new ArrayList<>();
+        for (int orderIndex = 0; orderIndex < this.orders.size(); orderIndex++) {
+            Order order = this.orders.get(orderIndex);
+            for (int position = 0; position < discounts.promoCardCount(orderIndex); position++) {
+                int cardIndex = discounts.promoCard(orderIndex, position);
+                BigDecimal discount = discounts.promoDiscount(orderIndex, position);
+                options.add(new PaymentOption(order, cards.get(cardIndex), order.getValue().subtract(discount),
+                        Optional.empty(), BigDecimal.ZERO, discount));
+                indexes.add(new int[]{orderIndex, cardIndex});
+            }
+        }
+        Integer[] permutation = new Integer[options.size()];
+        for (int i = 0; i < permutation.length; i++) {
+            permutation[i] = i;
+        }
+        Arrays.sort(permutation, (a, b) -> options.get(a).compareTo(options.get(b)));
+
+        this.candidateOrders = new int[permutation.length];
+        this.candidateCards = new int[permutation.length];
+        this.candidateAmounts = new BigDecimal[permutation.length];
+        this.candidateDiscounts = new BigDecimal[permutation.length];
+        for (int i = 0; i < permutation.length; i++) {
+            int source = permutation[i];
+            candidateOrders[i] = indexes.get(source)[0];
+            candidateCards[i] = indexes.get(source)[1];
+            candidateAmounts[i] = options.get(source).getPrimaryAmount();
+            candidateDiscounts[i] = options.get(source).getTotalDiscount();
+        }
+
+        Set<String> ids = new HashSet<>();
+        boolean uniqueIds = true;
+        for (Order order : this.orders) {
+            uniqueIds &= ids.add(order.getId());
+        }
+        this.replayable = uniqueIds;
+    }
+
+    /**
+     * Rozwiązanie policzone osobno dla grup zamówień, każda grupa z własnymi limitami
+     * (jeden przebieg optymalizatora == jedna grupa).
+     *
+     * @param groupMethods metody płatności każdej grupy w kolejności metod wejścia - limity grupy to {@code getLimit()},
+     *                     alokacje wskazują na te obiekty
+     * @param groupOfOrder grupa każdego zamówienia (indeks jak na wejściu)
+     * @param allocations  alokacje wszystkich grup (kolejność dowolna)
+     */
+    public Reference reference(List<List<PaymentMethod>> groupMethods, int[] groupOfOrder, List<Allocation> allocations) {
+        if (groupOfOrder.length != orders.size()) {
+            throw new IllegalArgumentException("Group assignment covers " + groupOfOrder.length + " of " + orders.size() + " orders");
+        }
+        Map<PaymentMethod, Integer> methodIndex = new IdentityHashMap<>();
+        BigDecimal[][] groupLimits = new BigDecimal[groupMethods.size()][];
+        for (int group = 0; group < groupMethods.size(); group++) {
+            List<PaymentMethod> methods = groupMethods.get(group);
+            if (methods.size() != methodIds.size()) {
+                throw new IllegalArgumentException("Group " + group + " has " + methods.size() + " payment methods");
+            }
+            groupLimits[group] = new BigDecimal[methods.size()];
+            for (int m = 0; m < methods.size(); m++) {
+                methodIndex.put(methods.get(m), m);
+                groupLimits[group][m] = methods.get(m).getLimit();
+            }
+        }
+
+        Map<Order, Integer> orderIndex = new IdentityHashMap<>();
+        for (int i = 0; i < orders.size(); i++) {
+            orderIndex.put(orders.get(i), i);
+        }
+        Allocation[] byOrder = new Allocation[orders.size()];
+        int[] primaryMethods = new int[orders.size()];
+        int[] secondaryMethods = new int[orders.size()];
+        for (Allocation allocation : allocations) {
+            Integer index = orderIndex.get(allocation.getOrder());
+            Integer primary = methodIndex.get(allocation.getPrimaryMethod());
+            if (index == null || primary == null) {
+                throw new IllegalArgumentException("Allocation does not belong to the prepared input: " + allocation.getOrder().getId());
+            }
+            byOrder[index] = allocation;
+            primaryMethods[index] = primary;
+            secondaryMethods[index] = allocation.getSecondaryPayment()
+                    .map(secondary -> methodIndex.get(secondary.paymentMethod()))
+                    .orElse(-1);
+        }
+        return new Reference(groupLimits, groupOfOrder.clone(), byOrder, primaryMethods, secondaryMethods);
+    }
+
+    /**
+     * Optymalizator liczący od zera, ale na przygotowanych danych
+     */
+    public Optimizer optimizer(List<PaymentMethod> paymentMethods) {
+        return optimizer(paymentMethods, null);
+    }
+
+    /**
+     * Optymalizator, który kontynuuje rozwiązanie {@code reference} od pierwszej decyzji zależnej od nowych limitów.
+     * Zmiana rabatu karty zmienia ranking kandydatów fazy 1 - wtedy liczy od zera, a zmiana rabatu punktów
+     * unieważnia tylko fazę 2.
+     *
+     * @param paymentMethods metody z nowymi limitami (te same id w tej samej kolejności), na nich liczy optymalizator
+     * @param reference      rozwiązanie do odtworzenia (null == liczymy od zera)
+     */
+    public Optimizer optimizer(List<PaymentMethod> paymentMethods, Reference reference) {
+        List<String> ids = paymentMethods.stream().map(PaymentMethod::getId).toList();
+        if (!ids.equals(methodIds)) {
+            throw new IllegalArgumentException("Payment methods differ from prepared input: " + ids);
+        }
+        if (changesCardDiscounts(paymentMethods)) {
+            //inny ranking kandydatów - od zera (kolejność fazy 2 od rabatów nie zależy)
+            Optimizer optimizer = new Optimizer(orders, paymentMethods);
+            optimizer.usePreparedValueOrder(byValue);
+            return optimizer;
+        }
+
+        boolean samePointsDiscount = paymentMethods.get(pointsIndex).getDiscount() == pointsPercent;
+        CheckpointLog.Checkpoint replayed = reference != null && replayable
+                ? replay(paymentMethods, reference, samePointsDiscount)
+                : null;
+
+        Optimizer optimizer = new Optimizer(orders, paymentMethods);
+        if (samePointsDiscount) {
+            optimizer.usePreparedDiscounts(discounts);
+        }
+        optimizer.usePreparedValueOrder(byValue);
+        //wznowienie za fazą 1 nie potrzebuje jej kandydatów
+        if (replayed == null || replayed.phase() == 1) {
+            optimizer.usePreparedCardOptions(preparedCardOptions(paymentMethods));
+        }
+        if (replayed != null) {
+            optimizer.resumeFrom(replayed);
+        }
+        return optimizer;
+    }
+
+    private List<PaymentOption> preparedCardOptions(List<PaymentMethod> paymentMethods) {
+        List<PaymentOption> options = new ArrayList<>(candidateOrders.length);
+        for (int i = 0; i < candidateOrders.length; i++) {
+            options.add(new PaymentOption(
+                    orders.get(candidateOrders[i]),
+                    paymentMethods.get(cardIndexes[candidateCards[i]]),
+                    candidateAmounts[i],
+                    Optional.empty(),
+                    BigDecimal.ZERO,
+                    candidateDiscounts[i]
+            ));
+        }
+        return Collections.unmodifiableList(options);
+    }
+
+    /**
+     * Odtworzenie rozwiązania w kolejności decyzji optymalizatora. Dla każdej decyzji porównujemy dostępne środki
+     * grupy zamówienia (limit grupy minus jej odtworzone alokacje) z dostępnymi przy nowych limitach.
+     *
+     * @return punkt kontrolny z alokacjami sprzed pierwszej rozbieżnej decyzji (albo wszystkimi, gdy jej nie ma)
+     */
+    private CheckpointLog.Checkpoint replay(List<PaymentMethod> paymentMethods, Reference reference,
+                                            boolean replayPhaseTwo) {
+        int methodCount = paymentMethods.size();
+        int groupCount = reference.groupLimits.length;
+        BigDecimal[][] groupAvailable = new BigDecimal[groupCount][];
+        for (int group = 0; group < groupCount; group++) {
+            groupAvailable[group] = reference.groupLimits[group].clone();
+        }
+        BigDecimal[] available = new BigDecimal[methodCount];
+        //jedna grupa: te same alokacje zmieniają oba stany, więc metody z tym samym limitem nie mogą się rozjechać
+        boolean[] compared = new boolean[methodCount];
+        for (int m = 0; m < methodCount; m++) {
+            available[m] = paymentMethods.get(m).getAvailable();
+            compared[m] = groupCount > 1 || groupAvailable[0][m].compareTo(available[m]) != 0;
+        }
+        int[] groupOfOrder = reference.groupOfOrder;
+        List<Integer> committed = new ArrayList<>();
+
+        //faza 1 - kandydat jest zatwierdzany, gdy karta pokrywa całe zamówienie
+        boolean[] allocated = new boolean[orders.size()];
+        for (int i = 0; i < candidateOrders.length; i++) {
+            int orderIndex = candidateOrders[i];
+            if (allocated[orderIndex]) {
+                continue;
+            }
+            int m = cardIndexes[candidateCards[i]];
+            int group = groupOfOrder[orderIndex];
+            BigDecimal value = orders.get(orderIndex).getValue();
+            boolean covers = groupAvailable[group][m].compareTo(value) >= 0;
+            if (compared[m] && covers != available[m].compareTo(value) >= 0) {
+                return checkpoint(1, i, committed, reference, paymentMethods);
+            }
+            if (!covers) {
+                continue;
+            }
+            //grupa zatwierdziła tego kandydata - jej alokacja musi się z nim zgadzać
+            if (reference.allocations[orderIndex] == null || reference.secondaryMethods[orderIndex] >= 0
+                    || reference.primaryMethods[orderIndex] != m) {
+                return checkpoint(1, i, committed, reference, paymentMethods);
+            }
+            allocated[orderIndex] = true;
+            apply(reference, orderIndex, groupAvailable[group], available);
+            committed.add(orderIndex);
+        }
+        if (!replayPhaseTwo) {
+            return checkpoint(2, 0, committed, reference, paymentMethods);
+        }
+
+        //faza 2 - pokrycie kwoty zamówienia i reszty przy płatności częściowej punktami
+        for (int i = 0; i < byValue.length; i++) {
+            int orderIndex = byValue[i];
+            if (allocated[orderIndex]) {
+                continue;
+            }
+            int group = groupOfOrder[orderIndex];
+            BigDecimal value = orders.get(orderIndex).getValue();
+            BigDecimal groupPoints = groupAvailable[group][pointsIndex];
+            BigDecimal cardAmount = partialCardAmount(orderIndex, value, groupPoints);
+            if (compared[pointsIndex]) {
+                BigDecimal points = available[pointsIndex];
+                if (coverageDiffers(groupPoints, points, value)
+                        || !Objects.equals(cardAmount, partialCardAmount(orderIndex, value, points))
+                        || cardAmount != null && !groupPoints.min(value).equals(points.min(value))) {
+                    return checkpoint(2, i, committed, reference, paymentMethods);
+                }
+            }
+            for (int m : cardIndexes) {
+                if (compared[m] && (coverageDiffers(groupAvailable[group][m], available[m], value)
+                        || cardAmount != null && coverageDiffers(groupAvailable[group][m], available[m], cardAmount))) {
+                    return checkpoint(2, i, committed, reference, paymentMethods);
+                }
+            }
+
+            if (reference.allocations[orderIndex] != null) {
+                apply(reference, orderIndex, groupAvailable[group], available);
+                committed.add(orderIndex);
+            }
+        }
+        return checkpoint(CheckpointLog.PHASE_DONE, 0, committed, reference, paymentMethods);
+    }
+
+    /**
+     * Kwota na kartę przy płatności punktami i kartą (jak w fazie 2 optymalizatora) albo null gdy ta opcja odpada
+     */
+    private BigDecimal partialCardAmount(int orderIndex, BigDecimal value, BigDecimal pointsAvailable) {
+        if (pointsAvailable.signum() <= 0 || pointsAvailable.compareTo(discounts.minPointsAmount(orderIndex)) < 0) {
+            return null;
+        }
+        BigDecimal remaining = value.subtract(discounts.partialPointsDiscount(orderIndex)).subtract(pointsAvailable.min(value));
+        return remaining.signum() > 0 ? remaining : null;
+    }
+
+    private static boolean coverageDiffers(BigDecimal available, BigDecimal otherAvailable, BigDecimal amount) {
+        return (available.compareTo(amount) >= 0) != (otherAvailable.compareTo(amount) >= 0);
+    }
+
+    private static void apply(Reference reference, int orderIndex, BigDecimal[] groupAvailable, BigDecimal[] available) {
+        Allocation allocation = reference.allocations[orderIndex];
+        int primary = reference.primaryMethods[orderIndex];
+        groupAvailable[primary] = groupAvailable[primary].subtract(allocation.getAmountFromPrimaryMethod());
+        available[primary] = available[primary].subtract(allocation.getAmountFromPrimaryMethod());
+        int secondary = reference.secondaryMethods[orderIndex];
+        if (secondary >= 0) {
+            BigDecimal amount = allocation.getSecondaryPayment().orElseThrow().amount();
+            groupAvailable[secondary] = groupAvailable[secondary].subtract(amount);
+            available[secondary] = available[secondary].subtract(amount);
+        }
+    }
+
+    /**
+     * Odtworzone alokacje (indeksy zamówień w kolejności zatwierdzania) przepisane na metody nowego przebiegu
+     */
+    private static CheckpointLog.Checkpoint checkpoint(int phase, int position, List<Integer> committed,
+                                                       Reference reference, List<PaymentMethod> paymentMethods) {
+        List<Allocation> allocations = new ArrayList<>(committed.size());
+        for (int orderIndex : committed) {
+            Allocation allocation = reference.allocations[orderIndex];
+            int secondary = reference.secondaryMethods[orderIndex];
+            allocations.add(new Allocation(
+                    allocation.getOrder(),
+                    paymentMethods.get(reference.primaryMethods[orderIndex]),
+                    allocation.getAmountFromPrimaryMethod(),
+                    allocation.getDiscountValue(),
+                    allocation.getSecondaryPayment().map(payment ->
+                            new Allocation.SecondaryPayment(paymentMethods.get(secondary), payment.amount()))
+            ));
+        }
+        return new CheckpointLog.Checkpoint(phase, position, allocations);
+    }
+
+    private boolean changesCardDiscounts(List<PaymentMethod> paymentMethods) {
+        for (int card = 0; card < cardIndexes.length; card++) {
+            if (paymentMethods.get(cardIndexes[card]).getDiscount() != cardPercents[card]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,18 @@
+package com.company.paymentoptimizer.algo;
+
+/**
+ * Zwykła pętla - zawsze dostępna, używana gdy moduł jdk.incubator.vector nie jest załadowany
+ */
+public class ScalarCapacityKernel implements CapacityKernel {
+
+    @Override
+    public int collectCovering(long[] available, int length, long amount, int[] out) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (available[i] >= amount) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,188 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analiza "co jeśli" - jak zmieni się łączny rabat po zmianie limitu lub rabatu metod płatności.
+ * Część niezależną od limitów liczymy raz w konstruktorze ({@link ReplayableInput}) razem z przebiegiem bazowym
+ * (limity z wejścia). Scenariusz odtwarza przebieg bazowy do pierwszej decyzji, na którą wpływają jego limity,
+ * i dalej liczy zwykły {@link Optimizer} - wynik jest taki sam jak osobne uruchomienie optymalizatora z danymi
+ * scenariusza. Scenariusze są liczone równolegle, każdy na własnej kopii metod płatności.
+ *
+ * Koszt scenariusza zależy od tego, jak wcześnie się rozjedzie z bazą. Pomiar (100k zamówień, 21 metod,
+ * 1 wątek, limit jednej metody +1000): gdy limity nie ograniczają wyniku scenariusz kosztuje ok. 0.15-0.3
+ * pełnego przebiegu (odtworzenie i przepisanie alokacji), przy kartach wyczerpywanych w trakcie ok. 0.2-0.3
+ * (wcześniej każdy scenariusz to pełna faza 2 i zatwierdzanie fazy 1, ok. 0.7-0.9).
+ */
+public class ScenarioEngine {
+
+    /**
+     * Wariant danych wejściowych - nadpisane limity i/lub rabaty wybranych metod (po id)
+     */
+    public record Scenario(String name, Map<String, BigDecimal> limits, Map<String, Integer> discounts) {
+
+        public static Scenario of(String name) {
+            return new Scenario(name, Map.of(), Map.of());
+        }
+
+        public Scenario withLimit(String methodId, BigDecimal limit) {
+            Map<String, BigDecimal> newLimits = new HashMap<>(limits);
+            newLimits.put(methodId, limit);
+            return new Scenario(name, Map.copyOf(newLimits), discounts);
+        }
+
+        public Scenario withDiscount(String methodId, int discount) {
+            Map<String, Integer> newDiscounts = new HashMap<>(discounts);
+            newDiscounts.put(methodId, discount);
+            return new Scenario(name, limits, Map.copyOf(newDiscounts));
+        }
+    }
+
+    public record ScenarioResult(Scenario scenario, BigDecimal totalDiscount, List<Allocation> allocations) {
+    }
+
+    private final List<PaymentMethod> baseMethods;
+    private final Map<String, Integer> methodIndex = new HashMap<>();
+    private final int threads;
+
+    private final ReplayableInput input;
+    //przebieg bazowy jako rozwiązanie do odtworzenia (jedna grupa z limitami z wejścia)
+    private final ReplayableInput.Reference base;
+
+    public ScenarioEngine(List<Order> orders, List<PaymentMethod> paymentMethods, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        this.threads = threads;
+        this.baseMethods = List.copyOf(paymentMethods);
+        for (int i = 0; i < baseMethods.size(); i++) {
+            methodIndex.put(baseMethods.get(i).getId(), i);
+        }
+
+        this.input = new ReplayableInput(orders, baseMethods);
+        List<PaymentMethod> baseRunMethods = forkMethods(Scenario.of("base"));
+        List<Allocation> baseAllocations = silenced(input.optimizer(baseRunMethods)).optimize();
+        this.base = input.reference(List.of(baseRunMethods), new int[orders.size()], baseAllocations);
+    }
+
+    /**
+     * Równoległe przeliczenie wszystkich scenariuszy (wyniki w kolejności scenariuszy)
+     */
+    public List<ScenarioResult> evaluate(List<Scenario> scenarios) {
+        List<Callable<ScenarioResult>> tasks = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            tasks.add(() -> evaluate(scenario));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, tasks.size())));
+        try {
+            List<ScenarioResult> results = new ArrayList<>();
+            for (Future<ScenarioResult> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Scenario evaluation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Scenario evaluation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Przeliczenie jednego scenariusza w bieżącym wątku
+     */
+    public ScenarioResult evaluate(Scenario scenario) {
+        List<Allocation> allocations = silenced(input.optimizer(forkMethods(scenario), base)).optimize();
+        return new ScenarioResult(scenario, totalDiscount(allocations), allocations);
+    }
+
+    /**
+     * Wartość krańcowa każdej metody: przyrost łącznego rabatu na jednostkę dodatkowego limitu
+     * (limit zwiększony o {@code delta}, reszta bez zmian). Kolejność jak metody na wejściu.
+     */
+    public Map<String, BigDecimal> marginalValues(BigDecimal delta) {
+        if (delta.signum() <= 0) {
+            throw new IllegalArgumentException("Limit delta must be positive: " + delta);
+        }
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(Scenario.of("base"));
+        for (PaymentMethod method : baseMethods) {
+            scenarios.add(Scenario.of(method.getId() + " +" + delta.toPlainString())
+                    .withLimit(method.getId(), method.getLimit().add(delta)));
+        }
+
+        List<ScenarioResult> results = evaluate(scenarios);
+        BigDecimal base = results.getFirst().totalDiscount();
+        Map<String, BigDecimal> marginal = new LinkedHashMap<>();
+        for (int i = 0; i < baseMethods.size(); i++) {
+            BigDecimal gained = results.get(i + 1).totalDiscount().subtract(base);
+            marginal.put(baseMethods.get(i).getId(), gained.divide(delta, 4, RoundingMode.HALF_UP));
+        }
+        return marginal;
+    }
+
+    public static BigDecimal totalDiscount(List<Allocation> allocations) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Allocation allocation : allocations) {
+            total = total.add(allocation.getDiscountValue());
+        }
+        return total;
+    }
+
+    /**
+     * Świeże kopie metod płatności (used == 0) z nadpisanymi wartościami scenariusza
+     */
+    private List<PaymentMethod> forkMethods(Scenario scenario) {
+        for (String id : scenario.limits().keySet()) {
+            requireKnown(id);
+        }
+        for (String id : scenario.discounts().keySet()) {
+            requireKnown(id);
+        }
+        List<PaymentMethod> methods = new ArrayList<>(baseMethods.size());
+        for (PaymentMethod base : baseMethods) {
+            methods.add(new PaymentMethod(
+                    base.getId(),
+                    scenario.discounts().getOrDefault(base.getId(), base.getDiscount()),
+                    scenario.limits().getOrDefault(base.getId(), base.getLimit())
+            ));
+        }
+        return methods;
+    }
+
+    /**
+     * Nieopłacone zamówienia widać w wyniku (brak alokacji), więc komunikaty o nich są pomijane
+     */
+    private static Optimizer silenced(Optimizer optimizer) {
+        optimizer.setUnallocatedOrderListener(order -> {
+        });
+        return optimizer;
+    }
+
+    private void requireKnown(String methodId) {
+        if (!methodIndex.containsKey(methodId)) {
+            throw new IllegalArgumentException("Unknown payment method in scenario: " + methodId);
+        }
+    }
+}
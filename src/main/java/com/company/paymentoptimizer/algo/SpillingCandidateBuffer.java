@@ -0,0 +1,282 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.PaymentOption;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Bufor kandydatów fazy 1 z ograniczoną pamięcią (external sort).
+ * Gdy w pamięci jest {@code maxInMemory} kandydatów, są sortowani i zrzucani do pliku tymczasowego
+ * (posortowany "run"). Przy odczycie runy są scalane k-way merge za pomocą kolejki priorytetowej.
+ * W pliku trzymamy tylko indeks zamówienia, indeks karty i numer kolejny (16 bajtów) - sam PaymentOption
+ * odtwarzamy przez {@link CandidateFactory}.
+ * Numer kolejny rozstrzyga remisy, więc kolejność jest taka sama jak przy stabilnym sortowaniu całej listy
+ * w pamięci (wynik optymalizacji nie zależy od budżetu pamięci).
+ * Runy trafiają do własnego katalogu w {@code tempDir} tworzonego przy pierwszym zrzucie. Scalone runy są
+ * usuwane od razu, reszta w {@link #close()}; gdy JVM zakończy się wcześniej, katalog usuwa jeden shutdown
+ * hook na bufor (zdejmowany w close(), więc długo działający proces nie zbiera wpisów na każdy plik).
+ */
+public class SpillingCandidateBuffer implements Closeable {
+
+    /** Szacowany rozmiar kandydata w pamięci (PaymentOption + BigDecimal + wpis bufora) */
+    public static final int ESTIMATED_CANDIDATE_BYTES = 160;
+
+    //maksymalna liczba jednocześnie otwartych plików przy scalaniu
+    private static final int MAX_MERGE_FAN_IN = 64;
+
+    /**
+     * Odtworzenie kandydata z zapisanych indeksów
+     */
+    @FunctionalInterface
+    public interface CandidateFactory {
+        PaymentOption create(int orderIndex, int cardIndex);
+    }
+
+    private record Entry(PaymentOption option, int orderIndex, int cardIndex, long seq) {
+    }
+
+    private static final Comparator<Entry> ENTRY_ORDER =
+            Comparator.comparing(Entry::option).thenComparingLong(Entry::seq);
+
+    private final int maxInMemory;
+    private final Path tempDir;
+    private final CandidateFactory factory;
+    private final List<Path> runs = new ArrayList<>();
+    //katalog runów i hook sprzątający przy wyjściu (null == nic jeszcze nie zrzucono)
+    private Path spillDir;
+    private Thread cleanupHook;
+    private List<Entry> inMemory = new ArrayList<>();
+    private long seq = 0;
+
+    public SpillingCandidateBuffer(long memoryBudgetBytes, Path tempDir, CandidateFactory factory) {
+        this.maxInMemory = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8,
+                memoryBudgetBytes / ESTIMATED_CANDIDATE_BYTES));
+        this.tempDir = tempDir;
+        this.factory = factory;
+    }
+
+    public void add(PaymentOption option, int orderIndex, int cardIndex) {
+        inMemory.add(new Entry(option, orderIndex, cardIndex, seq++));
+        if (inMemory.size() >= maxInMemory) {
+            spill();
+        }
+    }
+
+    public long size() {
+        return seq;
+    }
+
+    /**
+     * Liczba plików tymczasowych (0 == wszystko zmieściło się w pamięci)
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Kandydaci posortowani tak jak {@link PaymentOption#compareTo}. Można wywołać raz, po dodaniu wszystkich.
+     */
+    public Iterator<PaymentOption> sortedIterator() {
+        inMemory.sort(ENTRY_ORDER);
+        if (runs.isEmpty()) {
+            Iterator<Entry> entries = inMemory.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public PaymentOption next() {
+                    return entries.next().option();
+                }
+            };
+        }
+
+        //ostatni kawałek też zrzucamy, żeby w pamięci zostały tylko głowy runów
+        if (!inMemory.isEmpty()) {
+            spill();
+        }
+        inMemory = new ArrayList<>();
+        try {
+            while (runs.size() > MAX_MERGE_FAN_IN) {
+                List<Path> group = new ArrayList<>(runs.subList(0, MAX_MERGE_FAN_IN));
+                runs.subList(0, MAX_MERGE_FAN_IN).clear();
+                runs.add(mergeToRun(group));
+            }
+            return new MergeIterator(openAll(runs));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not merge candidate runs", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        inMemory = new ArrayList<>();
+        if (spillDir != null) {
+            deleteSpillDir();
+            try {
+                Runtime.getRuntime().removeShutdownHook(cleanupHook);
+            } catch (IllegalStateException e) {
+                //JVM już się zamyka - hook i tak zaraz sprzątnie
+            }
+            spillDir = null;
+            cleanupHook = null;
+        }
+    }
+
+    private void spill() {
+        inMemory.sort(ENTRY_ORDER);
+        try {
+            Path run = Files.createTempFile(spillDir(), "candidates-", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+                for (Entry entry : inMemory) {
+                    write(out, entry);
+                }
+            }
+            runs.add(run);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill candidates to disk", e);
+        }
+        inMemory.clear();
+    }
+
+    private Path mergeToRun(List<Path> group) throws IOException {
+        Path merged = Files.createTempFile(spillDir(), "candidates-", ".run");
+        MergeIterator iterator = new MergeIterator(openAll(group));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(merged)))) {
+            while (iterator.hasNext()) {
+                write(out, iterator.nextEntry());
+            }
+        }
+        for (Path run : group) {
+            Files.deleteIfExists(run);
+        }
+        return merged;
+    }
+
+    private Path spillDir() throws IOException {
+        if (spillDir == null) {
+            spillDir = Files.createTempDirectory(tempDir, "candidates-");
+            cleanupHook = new Thread(this::deleteSpillDirQuietly, "candidate-spill-cleanup");
+            Runtime.getRuntime().addShutdownHook(cleanupHook);
+        }
+        return spillDir;
+    }
+
+    private void deleteSpillDir() throws IOException {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(spillDir);
+    }
+
+    private void deleteSpillDirQuietly() {
+        try {
+            deleteSpillDir();
+        } catch (IOException e) {
+            //przy wyjściu nie ma już komu zgłosić błędu
+        }
+    }
+
+    private List<RunReader> openAll(List<Path> paths) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        for (Path path : paths) {
+            readers.add(new RunReader(path));
+        }
+        return readers;
+    }
+
+    private static void write(DataOutputStream out, Entry entry) throws IOException {
+        out.writeInt(entry.orderIndex());
+        out.writeInt(entry.cardIndex());
+        out.writeLong(entry.seq());
+    }
+
+    /**
+     * Sekwencyjny odczyt jednego posortowanego runu
+     */
+    private class RunReader {
+        private final DataInputStream in;
+        private Entry head;
+
+        RunReader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            advance();
+        }
+
+        void advance() throws IOException {
+            try {
+                int orderIndex = in.readInt();
+                int cardIndex = in.readInt();
+                long entrySeq = in.readLong();
+                head = new Entry(factory.create(orderIndex, cardIndex), orderIndex, cardIndex, entrySeq);
+            } catch (EOFException e) {
+                head = null;
+                in.close();
+            }
+        }
+    }
+
+    private static class MergeIterator implements Iterator<PaymentOption> {
+        private final PriorityQueue<RunReader> heads =
+                new PriorityQueue<>((a, b) -> ENTRY_ORDER.compare(a.head, b.head));
+
+        MergeIterator(List<RunReader> readers) {
+            for (RunReader reader : readers) {
+                if (reader.head != null) {
+                    heads.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public PaymentOption next() {
+            return nextEntry().option();
+        }
+
+        Entry nextEntry() {
+            RunReader reader = heads.poll();
+            if (reader == null) {
+                throw new NoSuchElementException();
+            }
+            Entry entry = reader.head;
+            try {
+                reader.advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read candidate run", e);
+            }
+            if (reader.head != null) {
+                heads.add(reader);
+            }
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.company.paymentoptimizer.algo;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Kolejność zamówień malejąco po wartości jako permutacja indeksów.
+ * Wartości są zamieniane na klucze stałoprzecinkowe (long, wspólna skala) i sortowane stabilnym
+ * sortowaniem pozycyjnym LSD po 11 bitach - bez obiektów Integer, komparatora i porównań BigDecimal.
+ * Remisy zostają w kolejności wejścia, tak jak przy stabilnym sortowaniu komparatorem.
+ */
+final class ValueSort {
+
+    private static final int BITS = 11;
+    private static final int RADIX = 1 << BITS;
+    private static final int MASK = RADIX - 1;
+    private static final int PASSES = (Long.SIZE + BITS - 1) / BITS;
+
+    //powyżej tej skali klucz long szybko by się przepełnił - wtedy zwykłe sortowanie
+    private static final int MAX_SCALE = 9;
+
+    private ValueSort() {
+    }
+
+    /**
+     * Indeksy posortowane malejąco po kluczu, stabilnie
+     */
+    static int[] descending(long[] keys) {
+        int n = keys.length;
+        //odwrócenie kolejności: bit znaku zamienia long na porządek bez znaku, negacja daje malejąco
+        long[] sortKeys = new long[n];
+        int[] counts = new int[PASSES * RADIX];
+        for (int i = 0; i < n; i++) {
+            long key = ~(keys[i] ^ Long.MIN_VALUE);
+            sortKeys[i] = key;
+            for (int pass = 0; pass < PASSES; pass++) {
+                counts[pass * RADIX + digit(key, pass)]++;
+            }
+        }
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        int[] orderBuffer = new int[n];
+        long[] keyBuffer = new long[n];
+
+        for (int pass = 0; pass < PASSES && n > 1; pass++) {
+            int base = pass * RADIX;
+            //wszystkie klucze mają tę samą cyfrę - przebieg niczego nie zmienia
+            if (counts[base + digit(sortKeys[0], pass)] == n) {
+                continue;
+            }
+            int offset = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int count = counts[base + d];
+                counts[base + d] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < n; i++) {
+                int position = counts[base + digit(sortKeys[i], pass)]++;
+                orderBuffer[position] = order[i];
+                keyBuffer[position] = sortKeys[i];
+            }
+            int[] swapOrder = order;
+            order = orderBuffer;
+            orderBuffer = swapOrder;
+            long[] swapKeys = sortKeys;
+            sortKeys = keyBuffer;
+            keyBuffer = swapKeys;
+        }
+        return order;
+    }
+
+    /**
+     * Indeksy wartości posortowane malejąco, stabilnie - pozycyjnie po kluczach stałoprzecinkowych,
+     * a komparatorem BigDecimal tylko gdy wartości nie mieszczą się w long
+     */
+    static int[] descending(int size, IntFunction<BigDecimal> values) {
+        long[] keys = fixedPointKeys(size, values);
+        if (keys != null) {
+            return descending(keys);
+        }
+
+        Integer[] permutation = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = i;
+        }
+        Arrays.sort(permutation, (a, b) -> values.apply(b).compareTo(values.apply(a)));
+
+        int[] byValue = new int[size];
+        for (int i = 0; i < size; i++) {
+            byValue[i] = permutation[i];
+        }
+        return byValue;
+    }
+
+    /**
+     * Klucze stałoprzecinkowe dla wartości BigDecimal (wspólna skala = największa skala wejścia, min. 2)
+     *
+     * @return null gdy któraś wartość nie mieści się w long przy tej skali albo jej brakuje
+     */
+    static long[] fixedPointKeys(int size, IntFunction<BigDecimal> values) {
+        int scale = 2;
+        for (int i = 0; i < size; i++) {
+            BigDecimal value = values.apply(i);
+            if (value == null || value.scale() > MAX_SCALE) {
+                return null;
+            }
+            scale = Math.max(scale, value.scale());
+        }
+
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            try {
+                keys[i] = values.apply(i).setScale(scale).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        }
+        return keys;
+    }
+
+    private static int digit(long key, int pass) {
+        return (int) (key >>> (pass * BITS)) & MASK;
+    }
+}
@@ -0,0 +1,37 @@
+package com.company.paymentoptimizer.algo;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Wersja SIMD (Vector API) - porównanie całego wektora limitów naraz, z maski wyciągamy indeksy kart.
+ * Ładowana tylko przez {@link CardCapacityIndex#selectKernel()} gdy JVM ma --add-modules jdk.incubator.vector.
+ */
+public class VectorCapacityKernel implements CapacityKernel {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public int collectCovering(long[] available, int length, long amount, int[] out) {
+        int count = 0;
+        int i = 0;
+        int upperBound = SPECIES.loopBound(length);
+        for (; i < upperBound; i += SPECIES.length()) {
+            long bits = LongVector.fromArray(SPECIES, available, i)
+                    .compare(VectorOperators.GE, amount)
+                    .toLong();
+            while (bits != 0) {
+                out[count++] = i + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        //końcówka krótsza niż wektor
+        for (; i < length; i++) {
+            if (available[i] >= amount) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,252 @@
+package com.company.paymentoptimizer.dist;
+
+import com.company.paymentoptimizer.algo.Optimizer;
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Optymalizacja rozłożona na kilka procesów JVM na tym samym hoście:
+ *  1. zamówienia dzielone są na shardy ({@link ShardPlanner}) z podzielonymi limitami metod,
+ *  2. każdy shard liczy osobny proces {@link ShardWorker} (połączenie zwrotne na localhost),
+ *  3. po zebraniu wyników zamówienia bez alokacji są liczone jeszcze raz na limitach, których
+ *     shardy nie wykorzystały (reconciliation) - limit niewykorzystany w jednym shardzie może
+ *     pokryć zamówienie z innego. Koordynator nie generuje kandydatów dla całego wejścia, tylko dla tych zamówień.
+ * Wynik jest poprawny (limity nie są przekroczone), ale może się różnić od jednego {@link Optimizer}
+ * na całym wejściu - zachłanny wybór działa tylko w ramach shardu. Limity kart są dzielone według popytu
+ * shardów na promocje ({@link ShardPlanner}), żeby shard nie tracił rabatu przez za małą część limitu.
+ * Workery nie wypisują komunikatów o nieopłaconych zamówieniach - zgłasza je tylko wynik końcowy.
+ */
+public class ShardCoordinator {
+
+    private static final long CONNECT_TIMEOUT_MILLIS = 60_000;
+    private static final int ACCEPT_POLL_MILLIS = 200;
+    //rabat za co najmniej 10% wartości zamówienia w punktach
+    private static final int PARTIAL_POINTS_DISCOUNT = 10;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final int workerCount;
+    //zamówienia bez alokacji w wyniku końcowym (domyślnie komunikat jak w optymalizatorze)
+    private Consumer<Order> unallocatedOrderListener = order -> System.out.println(Optimizer.unallocatedMessage(order));
+
+    public ShardCoordinator(int workerCount) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workerCount);
+        }
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Odbiorca zamówień, których nie opłaca wynik końcowy (jak {@link Optimizer#setUnallocatedOrderListener})
+     */
+    public void setUnallocatedOrderListener(Consumer<Order> unallocatedOrderListener) {
+        this.unallocatedOrderListener = Objects.requireNonNull(unallocatedOrderListener);
+    }
+
+    /**
+     * @param orders zamówienia (także widok {@link com.company.paymentoptimizer.model.OrderTable#asOrders()} -
+     *               zamówienia są rozpoznawane po id, nie po tożsamości obiektów)
+     * @return alokacje shardów (w kolejności shardów) i na końcu alokacje z reconciliation;
+     * zużycie metod płatności z wejścia jest zaktualizowane tak jak po {@link Optimizer#optimize()}
+     */
+    public List<Allocation> run(List<Order> orders, List<PaymentMethod> paymentMethods)
+            throws IOException, InterruptedException {
+        List<ShardPlanner.Shard> shards = new ShardPlanner().plan(orders, paymentMethods, workerCount);
+        Map<String, Order> ordersById = ShardProtocol.byId(orders, Order::getId);
+        Map<String, PaymentMethod> methodsById = ShardProtocol.byId(paymentMethods, PaymentMethod::getId);
+
+        List<Process> workers = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        try (ServerSocket server = new ServerSocket(0, workerCount, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_POLL_MILLIS);
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(startWorker(server.getLocalPort()));
+            }
+
+            //shard trafia do tego workera, który połączy się pierwszy
+            List<Future<List<Allocation>>> results = new ArrayList<>();
+            for (ShardPlanner.Shard shard : shards) {
+                Socket socket = accept(server, workers);
+                results.add(executor.submit(() -> exchange(socket, shard, ordersById, methodsById)));
+            }
+
+            List<Allocation> allocations = new ArrayList<>();
+            for (Future<List<Allocation>> result : results) {
+                allocations.addAll(get(result));
+            }
+            for (Process worker : workers) {
+                worker.waitFor(5, TimeUnit.SECONDS);
+            }
+
+            allocations.addAll(reconcile(orders, paymentMethods, allocations, methodsById));
+            return allocations;
+        } finally {
+            executor.shutdownNow();
+            for (Process worker : workers) {
+                if (worker.isAlive()) {
+                    worker.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    /**
+     * Zamówienia bez alokacji liczone zwykłym optymalizatorem na pozostałych (globalnie) limitach.
+     * Zamówienia, których nie pokryją nawet punkty z największym pozostałym limitem karty, są od razu
+     * zgłaszane jako nieopłacone - przy wyczerpanych limitach optymalizator nie liczy dla nich kandydatów.
+     */
+    private List<Allocation> reconcile(List<Order> orders, List<PaymentMethod> paymentMethods,
+                                       List<Allocation> allocations, Map<String, PaymentMethod> methodsById) {
+        Set<String> allocated = new HashSet<>();
+        for (Allocation allocation : allocations) {
+            allocated.add(allocation.getOrder().getId());
+            addUsed(allocation);
+        }
+
+        List<PaymentMethod> leftover = new ArrayList<>(paymentMethods.size());
+        BigDecimal points = BigDecimal.ZERO;
+        BigDecimal maxCard = BigDecimal.ZERO;
+        int maxDiscount = PARTIAL_POINTS_DISCOUNT;
+        for (PaymentMethod method : paymentMethods) {
+            leftover.add(new PaymentMethod(method.getId(), method.getDiscount(), method.getAvailable()));
+            if (method.isPointsMethod()) {
+                points = points.add(method.getAvailable());
+            } else {
+                maxCard = maxCard.max(method.getAvailable());
+            }
+            maxDiscount = Math.max(maxDiscount, method.getDiscount());
+        }
+        //opłata to zawsze jedna karta, same punkty albo punkty z jedną kartą, po rabacie co najwyżej maxDiscount
+        BigDecimal reachable = points.add(maxCard).multiply(HUNDRED);
+        BigDecimal minPaidPercent = BigDecimal.valueOf(100 - maxDiscount);
+
+        List<Order> unallocated = new ArrayList<>();
+        for (Order order : orders) {
+            if (allocated.contains(order.getId())) {
+                continue;
+            }
+            if (order.getValue().multiply(minPaidPercent).compareTo(reachable) > 0) {
+                unallocatedOrderListener.accept(order);
+            } else {
+                unallocated.add(order);
+            }
+        }
+        if (unallocated.isEmpty()) {
+            return List.of();
+        }
+
+        Optimizer optimizer = new Optimizer(unallocated, leftover);
+        optimizer.setUnallocatedOrderListener(unallocatedOrderListener);
+        List<Allocation> reconciled = new ArrayList<>();
+        for (Allocation allocation : optimizer.optimize()) {
+            //podmiana kopii metod na obiekty z wejścia
+            Allocation original = new Allocation(allocation.getOrder(),
+                    methodsById.get(allocation.getPrimaryMethod().getId()),
+                    allocation.getAmountFromPrimaryMethod(), allocation.getDiscountValue(),
+                    allocation.getSecondaryPayment().map(secondary -> new Allocation.SecondaryPayment(
+                            methodsById.get(secondary.paymentMethod().getId()), secondary.amount())));
+            addUsed(original);
+            reconciled.add(original);
+        }
+        return reconciled;
+    }
+
+    private static void addUsed(Allocation allocation) {
+        allocation.getPrimaryMethod().addUsed(allocation.getAmountFromPrimaryMethod());
+        allocation.getSecondaryPayment().ifPresent(secondary ->
+                secondary.paymentMethod().addUsed(secondary.amount()));
+    }
+
+    /**
+     * Alokacje shardu zamienione na zamówienia i metody płatności z wejścia koordynatora
+     */
+    private static List<Allocation> exchange(Socket socket, ShardPlanner.Shard shard, Map<String, Order> ordersById,
+                                             Map<String, PaymentMethod> methodsById) throws IOException {
+        try (socket) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            ShardProtocol.writeShard(out, shard.orders(), shard.paymentMethods());
+            return ShardProtocol.readAllocations(in, ordersById, methodsById);
+        } catch (IOException e) {
+            throw new IOException("Shard " + shard.index() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Czeka na połączenie workera; przerywa od razu, gdy któryś proces zakończył się błędem przed połączeniem
+     */
+    private static Socket accept(ServerSocket server, List<Process> workers) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                return server.accept();
+            } catch (SocketTimeoutException e) {
+                for (Process worker : workers) {
+                    if (!worker.isAlive() && worker.exitValue() != 0) {
+                        throw new IOException("Worker process exited with code " + worker.exitValue());
+                    }
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Timed out waiting for worker processes to connect");
+                }
+            }
+        }
+    }
+
+    /**
+     * Worker to ta sama JVM i classpath co koordynator (moduł wektorowy też, jeśli jest załadowany)
+     */
+    private static Process startWorker(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            command.add("--add-modules");
+            command.add("jdk.incubator.vector");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.add(Integer.toString(port));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private static List<Allocation> get(Future<List<Allocation>> result) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.company.paymentoptimizer.dist;
+
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Podział zamówień na shardy po hashu id zamówienia. Każdy shard dostaje własne kopie metod płatności
+ * z limitem podzielonym proporcjonalnie do popytu shardu na daną metodę: dla karty to wartość zamówień
+ * z jej promocją (faza 1 zużywa kartę w tym tempie), dla punktów i kart bez promocji w shardach - łączna
+ * wartość zamówień. Reszta z zaokrąglenia trafia do ostatniego shardu, więc suma limitów shardów jest równa
+ * limitowi wejściowemu.
+ */
+public class ShardPlanner {
+
+    public record Shard(int index, List<Order> orders, List<PaymentMethod> paymentMethods) {
+    }
+
+    public List<Shard> plan(List<Order> orders, List<PaymentMethod> paymentMethods, int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+
+        List<List<Order>> shardOrders = new ArrayList<>();
+        BigDecimal[] shardValues = new BigDecimal[shardCount];
+        //wartość zamówień z promocją danej karty w każdym shardzie
+        Map<String, BigDecimal[]> promotionDemand = new HashMap<>();
+        for (int i = 0; i < shardCount; i++) {
+            shardOrders.add(new ArrayList<>());
+            shardValues[i] = BigDecimal.ZERO;
+        }
+        //kolejność wejścia w ramach shardu zostaje zachowana (od niej zależą remisy)
+        for (Order order : orders) {
+            int shard = Math.floorMod(order.getId().hashCode(), shardCount);
+            shardOrders.get(shard).add(order);
+            shardValues[shard] = shardValues[shard].add(order.getValue());
+            for (String promotion : new HashSet<>(order.getPromotions())) {
+                BigDecimal[] demand = promotionDemand.computeIfAbsent(promotion, id -> zeros(shardCount));
+                demand[shard] = demand[shard].add(order.getValue());
+            }
+        }
+
+        List<List<PaymentMethod>> shardMethods = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shardMethods.add(new ArrayList<>(paymentMethods.size()));
+        }
+        for (PaymentMethod method : paymentMethods) {
+            BigDecimal[] demand = method.isPointsMethod() ? null : promotionDemand.get(method.getId());
+            BigDecimal[] limits = divideLimit(method.getLimit(), demand != null ? demand : shardValues);
+            for (int i = 0; i < shardCount; i++) {
+                shardMethods.get(i).add(new PaymentMethod(method.getId(), method.getDiscount(), limits[i]));
+            }
+        }
+
+        List<Shard> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard(i, shardOrders.get(i), shardMethods.get(i)));
+        }
+        return shards;
+    }
+
+    private static BigDecimal[] divideLimit(BigDecimal limit, BigDecimal[] weights) {
+        BigDecimal totalWeight = BigDecimal.ZERO;
+        for (BigDecimal weight : weights) {
+            totalWeight = totalWeight.add(weight);
+        }
+        int scale = Math.max(limit.scale(), 2);
+        BigDecimal[] limits = new BigDecimal[weights.length];
+        BigDecimal assigned = BigDecimal.ZERO;
+        for (int i = 0; i < weights.length - 1; i++) {
+            BigDecimal share = totalWeight.signum() == 0
+                    ? limit.divide(BigDecimal.valueOf(weights.length), scale, RoundingMode.DOWN)
+                    : limit.multiply(weights[i]).divide(totalWeight, scale, RoundingMode.DOWN);
+            limits[i] = share;
+            assigned = assigned.add(share);
+        }
+        limits[weights.length - 1] = limit.subtract(assigned);
+        return limits;
+    }
+
+    private static BigDecimal[] zeros(int size) {
+        BigDecimal[] values = new BigDecimal[size];
+        Arrays.fill(values, BigDecimal.ZERO);
+        return values;
+    }
+}
@@ -0,0 +1,149 @@
+package com.company.paymentoptimizer.dist;
+
+import com.company.paymentoptimizer.io.AllocationCodec;
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Tekstowy protokół koordynator <-> worker, jedna wiadomość na linię, pola rozdzielone tabulatorami:
+ *   koordynator: M id discount limit | O id value [promocje...] | END
+ *   worker:      A alokacja ({@link AllocationCodec}) ... END   albo   E komunikat błędu
+ * Id i promocje są escapowane jak w {@link AllocationCodec#escape}.
+ */
+final class ShardProtocol {
+
+    private static final String SEPARATOR = "\t";
+    private static final String METHOD = "M";
+    private static final String ORDER = "O";
+    private static final String ALLOCATION = "A";
+    private static final String ERROR = "E";
+    private static final String END = "END";
+
+    record ShardInput(List<Order> orders, List<PaymentMethod> paymentMethods) {
+    }
+
+    private ShardProtocol() {
+    }
+
+    static void writeShard(Writer out, List<Order> orders, List<PaymentMethod> paymentMethods) throws IOException {
+        for (PaymentMethod method : paymentMethods) {
+            out.write(METHOD + SEPARATOR + AllocationCodec.escape(method.getId()) + SEPARATOR + method.getDiscount()
+                    + SEPARATOR + method.getLimit().toPlainString() + "\n");
+        }
+        StringBuilder line = new StringBuilder(64);
+        for (Order order : orders) {
+            line.setLength(0);
+            line.append(ORDER).append(SEPARATOR).append(AllocationCodec.escape(order.getId()))
+                    .append(SEPARATOR).append(order.getValue().toPlainString());
+            for (String promotion : order.getPromotions()) {
+                line.append(SEPARATOR).append(AllocationCodec.escape(promotion));
+            }
+            out.write(line.append('\n').toString());
+        }
+        out.write(END + "\n");
+        out.flush();
+    }
+
+    static ShardInput readShard(BufferedReader in) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        List<PaymentMethod> paymentMethods = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null && !END.equals(line)) {
+            String[] fields = line.split(SEPARATOR, -1);
+            switch (fields[0]) {
+                case METHOD -> {
+                    requireFields(fields, 4, line);
+                    paymentMethods.add(new PaymentMethod(unescape(fields[1], line), Integer.parseInt(fields[2]),
+                            new BigDecimal(fields[3])));
+                }
+                case ORDER -> {
+                    requireFields(fields, 3, line);
+                    List<String> promotions = new ArrayList<>(fields.length - 3);
+                    for (int i = 3; i < fields.length; i++) {
+                        promotions.add(unescape(fields[i], line));
+                    }
+                    orders.add(new Order(unescape(fields[1], line), new BigDecimal(fields[2]), promotions));
+                }
+                default -> throw new IOException("Unexpected shard message: " + line);
+            }
+        }
+        if (line == null) {
+            throw new IOException("Connection closed before end of shard");
+        }
+        return new ShardInput(orders, paymentMethods);
+    }
+
+    static void writeAllocations(Writer out, List<Allocation> allocations) throws IOException {
+        for (Allocation allocation : allocations) {
+            out.write(ALLOCATION + SEPARATOR + AllocationCodec.encode(allocation) + "\n");
+        }
+        out.write(END + "\n");
+        out.flush();
+    }
+
+    static void writeError(Writer out, String message) throws IOException {
+        //komunikat w jednej linii
+        out.write(ERROR + SEPARATOR + String.valueOf(message).replace('\n', ' ').replace('\r', ' ') + "\n");
+        out.flush();
+    }
+
+    /**
+     * Alokacje workera zamienione na obiekty z wejścia koordynatora
+     * @throws IOException gdy worker zgłosił błąd albo zerwał połączenie
+     */
+    static List<Allocation> readAllocations(BufferedReader in, Map<String, Order> ordersById,
+                                            Map<String, PaymentMethod> methodsById) throws IOException {
+        List<Allocation> allocations = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null && !END.equals(line)) {
+            if (line.startsWith(ALLOCATION + SEPARATOR)) {
+                try {
+                    allocations.add(AllocationCodec.decode(line.substring(2), ordersById, methodsById));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid allocation from worker: " + line, e);
+                }
+            } else if (line.startsWith(ERROR + SEPARATOR)) {
+                throw new IOException("Worker failed: " + line.substring(2));
+            } else {
+                throw new IOException("Unexpected worker message: " + line);
+            }
+        }
+        if (line == null) {
+            throw new IOException("Worker closed connection before sending all allocations");
+        }
+        return allocations;
+    }
+
+    static <T> Map<String, T> byId(List<T> values, Function<T, String> id) {
+        Map<String, T> map = new HashMap<>();
+        for (T value : values) {
+            map.put(id.apply(value), value);
+        }
+        return map;
+    }
+
+    private static String unescape(String field, String line) throws IOException {
+        try {
+            return AllocationCodec.unescape(field);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed shard message: " + line, e);
+        }
+    }
+
+    private static void requireFields(String[] fields, int min, String line) throws IOException {
+        if (fields.length < min) {
+            throw new IOException("Malformed shard message: " + line);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.company.paymentoptimizer.dist;
+
+import com.company.paymentoptimizer.algo.Optimizer;
+import com.company.paymentoptimizer.model.Allocation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Proces workera uruchamiany przez {@link ShardCoordinator}: łączy się z koordynatorem na localhost,
+ * odbiera jeden shard, liczy go zwykłym {@link Optimizer} i odsyła alokacje.
+ */
+public class ShardWorker {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: ShardWorker <coordinator port>");
+            System.exit(1);
+        }
+        //stdout workera nie jest częścią raportu - komunikaty optymalizatora idą na stderr
+        System.setOut(System.err);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            try {
+                ShardProtocol.ShardInput shard = ShardProtocol.readShard(in);
+                Optimizer optimizer = new Optimizer(shard.orders(), shard.paymentMethods());
+                //zamówienie bez alokacji w shardzie może jeszcze opłacić reconciliation - zgłasza je koordynator
+                optimizer.setUnallocatedOrderListener(order -> { });
+                List<Allocation> allocations = optimizer.optimize();
+                ShardProtocol.writeAllocations(out, allocations);
+            } catch (Exception e) {
+                ShardProtocol.writeError(out, e.getClass().getSimpleName() + ": " + e.getMessage());
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Zapis alokacji jako jednej linii tekstu rozdzielonej tabulatorami:
+ * orderId  primaryId  primaryAmount  discount  [secondaryId  secondaryAmount]
+ * Zamówienia i metody zapisujemy tylko po id - przy odczycie podmieniamy je na obiekty z wejścia.
+ * Id może zawierać dowolne znaki (JSON na to pozwala), więc tabulator, nowa linia, powrót karetki
+ * i backslash są zapisywane jako \t, \n, \r i \\ - linia zawsze ma tyle pól, ile powinna.
+ */
+public final class AllocationCodec {
+
+    static final char SEPARATOR = '\t';
+
+    private AllocationCodec() {
+    }
+
+    public static String encode(Allocation allocation) {
+        StringBuilder sb = new StringBuilder(64);
+        appendEscaped(sb, allocation.getOrder().getId()).append(SEPARATOR);
+        appendEscaped(sb, allocation.getPrimaryMethod().getId()).append(SEPARATOR)
+                .append(allocation.getAmountFromPrimaryMethod().toPlainString()).append(SEPARATOR)
+                .append(allocation.getDiscountValue().toPlainString());
+
+        allocation.getSecondaryPayment().ifPresent(secondary ->
+                appendEscaped(sb.append(SEPARATOR), secondary.paymentMethod().getId())
+                        .append(SEPARATOR).append(secondary.amount().toPlainString()));
+        return sb.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException gdy linia jest uszkodzona albo odwołuje się do nieznanego id
+     */
+    public static Allocation decode(String line, Map<String, Order> ordersById,
+                                    Map<String, PaymentMethod> methodsById) {
+        String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length != 4 && fields.length != 6) {
+            throw new IllegalArgumentException("Malformed allocation line: " + line);
+        }
+
+        Optional<Allocation.SecondaryPayment> secondary = Optional.empty();
+        if (fields.length == 6) {
+            secondary = Optional.of(new Allocation.SecondaryPayment(
+                    lookup(methodsById, unescape(fields[4]), "payment method"), new BigDecimal(fields[5])));
+        }
+
+        return new Allocation(
+                lookup(ordersById, unescape(fields[0]), "order"),
+                lookup(methodsById, unescape(fields[1]), "payment method"),
+                new BigDecimal(fields[2]),
+                new BigDecimal(fields[3]),
+                secondary
+        );
+    }
+
+    /**
+     * Pole tekstowe bez separatorów pól i linii (odwrotność: {@link #unescape(String)})
+     */
+    public static String escape(String field) {
+        return appendEscaped(new StringBuilder(field.length() + 8), field).toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException gdy pole kończy się pojedynczym backslashem albo ma nieznaną sekwencję
+     */
+    public static String unescape(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i == field.length()) {
+                throw new IllegalArgumentException("Unterminated escape in field: " + field);
+            }
+            switch (field.charAt(i)) {
+                case 't' -> sb.append('\t');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case '\\' -> sb.append('\\');
+                default -> throw new IllegalArgumentException("Unknown escape \\" + field.charAt(i) + " in field: " + field);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder appendEscaped(StringBuilder sb, String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\t' -> sb.append("\\t");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\\' -> sb.append("\\\\");
+                default -> sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    private static <T> T lookup(Map<String, T> byId, String id, String kind) {
+        T value = byId.get(id);
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown " + kind + " id: " + id);
+        }
+        return value;
+    }
+}
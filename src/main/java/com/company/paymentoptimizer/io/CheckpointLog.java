@@ -0,0 +1,230 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plik (append-only) z punktami kontrolnymi optymalizacji, pozwala wznowić przerwany przebieg.
+ * Format - jedna linia na wpis:
+ *   H  &lt;hash wejścia&gt;   --> pierwsza linia: {@link ResultCache#inputHash} zamówień, metod i wersji algorytmu
+ *   A  &lt;alokacja w formacie {@link AllocationCodec}&gt;
+ *   C  &lt;faza&gt;  &lt;pozycja&gt;   --> wszystko przed tą linią jest spójne, kolejna do przetworzenia pozycja w fazie
+ * Wykorzystanie limitów metod nie jest zapisywane osobno - odtwarzamy je z zatwierdzonych alokacji,
+ * więc nie może się rozjechać z alokacjami. Wznowienie z plikiem zapisanym dla innego wejścia
+ * (zmienione zamówienia, limity albo wersja algorytmu) kończy się błędem zamiast mieszać stany.
+ */
+public class CheckpointLog implements Closeable {
+
+    /** Faza oznaczająca zakończoną optymalizację */
+    public static final int PHASE_DONE = 3;
+
+    private static final String HEADER = "H";
+    private static final String ALLOCATION = "A";
+    private static final String COMMIT = "C";
+
+    private final FileChannel channel;
+    private final BufferedWriter writer;
+    //hash wejścia z nagłówka (null == nagłówek jeszcze nie zapisany)
+    private String inputHash;
+
+    /**
+     * Stan odtworzony z ostatniego spójnego punktu kontrolnego
+     * @param phase faza w której przerwano (1 - karty z promocją, 2 - pozostałe zamówienia, 3 - koniec)
+     * @param position indeks kolejnego elementu do przetworzenia w danej fazie
+     */
+    public record Checkpoint(int phase, int position, List<Allocation> allocations) {
+    }
+
+    private CheckpointLog(FileChannel channel, String inputHash) {
+        this.channel = channel;
+        this.inputHash = inputHash;
+        this.writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Nowy plik punktów kontrolnych (istniejący jest nadpisywany). Nagłówek z hashem wejścia zapisuje
+     * {@link #start(String)} - w trybie potokowym zamówienia są znane dopiero po sparsowaniu.
+     */
+    public static CheckpointLog create(Path file) throws IOException {
+        return new CheckpointLog(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), null);
+    }
+
+    /**
+     * Otwiera istniejący plik do dopisywania. Niezatwierdzony ogon (po ostatniej linii C) jest obcinany,
+     * żeby kolejne wpisy nie mieszały się z alokacjami z przerwanego przebiegu.
+     */
+    private static CheckpointLog openForResume(Path file, long consistentLength, String inputHash) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(consistentLength);
+        channel.position(consistentLength);
+        return new CheckpointLog(channel, inputHash);
+    }
+
+    /**
+     * Zapis nagłówka z hashem wejścia przed pierwszym wpisem. Dla wznowionego pliku tylko sprawdza,
+     * czy hash się zgadza.
+     */
+    public void start(String inputHash) throws IOException {
+        if (this.inputHash != null) {
+            if (!this.inputHash.equals(inputHash)) {
+                throw new IOException("Checkpoint was written for different input");
+            }
+            return;
+        }
+        writer.write(HEADER + AllocationCodec.SEPARATOR + inputHash);
+        writer.write('\n');
+        writer.flush();
+        channel.force(false);
+        this.inputHash = inputHash;
+    }
+
+    public void append(Allocation allocation) throws IOException {
+        requireStarted();
+        writer.write(ALLOCATION);
+        writer.write(AllocationCodec.SEPARATOR);
+        writer.write(AllocationCodec.encode(allocation));
+        writer.write('\n');
+    }
+
+    /**
+     * Zatwierdzenie punktu kontrolnego - dane trafiają na dysk zanim metoda się zakończy
+     */
+    public void commit(int phase, int position) throws IOException {
+        requireStarted();
+        writer.write(COMMIT + AllocationCodec.SEPARATOR + phase + AllocationCodec.SEPARATOR + position);
+        writer.write('\n');
+        writer.flush();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void requireStarted() {
+        if (inputHash == null) {
+            throw new IllegalStateException("Checkpoint header not written - call start() first");
+        }
+    }
+
+    /**
+     * Wczytanie ostatniego spójnego punktu kontrolnego.
+     * @param inputHash hash bieżącego wejścia - musi się zgadzać z nagłówkiem pliku
+     * @return null gdy plik nie istnieje albo nie zawiera żadnej linii C
+     * @throws IOException także gdy plik zapisano dla innego wejścia
+     */
+    public static Checkpoint load(Path file, List<Order> orders, List<PaymentMethod> paymentMethods,
+                                  String inputHash) throws IOException {
+        LoadResult result = read(file, orders, paymentMethods, inputHash);
+        return result == null ? null : result.checkpoint;
+    }
+
+    /**
+     * Wczytuje ostatni punkt kontrolny i otwiera plik do dalszego dopisywania
+     */
+    public static Resumed resume(Path file, List<Order> orders, List<PaymentMethod> paymentMethods,
+                                 String inputHash) throws IOException {
+        LoadResult result = read(file, orders, paymentMethods, inputHash);
+        if (result == null) {
+            return new Resumed(null, create(file));
+        }
+        return new Resumed(result.checkpoint, openForResume(file, result.consistentLength, inputHash));
+    }
+
+    public record Resumed(Checkpoint checkpoint, CheckpointLog log) {
+    }
+
+    private record LoadResult(Checkpoint checkpoint, long consistentLength) {
+    }
+
+    private static LoadResult read(Path file, List<Order> orders, List<PaymentMethod> paymentMethods,
+                                   String inputHash) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        Map<String, Order> ordersById = new HashMap<>();
+        for (Order order : orders) {
+            ordersById.put(order.getId(), order);
+        }
+        Map<String, PaymentMethod> methodsById = new HashMap<>();
+        for (PaymentMethod method : paymentMethods) {
+            methodsById.put(method.getId(), method);
+        }
+
+        List<Allocation> committed = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        int phase = -1;
+        int position = 0;
+        long offset = 0;
+        long consistentLength = 0;
+        long fileSize = Files.size(file);
+        boolean headerRead = false;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                int tab = line.indexOf(AllocationCodec.SEPARATOR);
+                if (offset > fileSize || tab < 0) {
+                    //urwana ostatnia linia bez znaku nowej linii (przerwany zapis) - ignorujemy
+                    break;
+                }
+                String kind = line.substring(0, tab);
+                String payload = line.substring(tab + 1);
+
+                if (!headerRead) {
+                    if (!HEADER.equals(kind)) {
+                        throw new IOException("Checkpoint file " + file + " has no input header");
+                    }
+                    if (!payload.equals(inputHash)) {
+                        throw new IOException("Checkpoint file " + file + " was written for different input"
+                                + " (orders, payment methods or solver version changed) - remove it or run without --resume");
+                    }
+                    headerRead = true;
+                } else if (ALLOCATION.equals(kind)) {
+                    pending.add(payload);
+                } else if (COMMIT.equals(kind)) {
+                    String[] fields = payload.split(String.valueOf(AllocationCodec.SEPARATOR));
+                    if (fields.length != 2) {
+                        break;
+                    }
+                    for (String allocationLine : pending) {
+                        committed.add(AllocationCodec.decode(allocationLine, ordersById, methodsById));
+                    }
+                    pending.clear();
+                    phase = Integer.parseInt(fields[0]);
+                    position = Integer.parseInt(fields[1]);
+                    consistentLength = offset;
+                } else {
+                    throw new IOException("Corrupted checkpoint file " + file + ": " + line);
+                }
+            }
+        }
+
+        if (phase < 0) {
+            return null;
+        }
+        return new LoadResult(new Checkpoint(phase, position, committed), consistentLength);
+    }
+}
@@ -0,0 +1,381 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Ręcznie napisany parser dwóch stałych formatów wejścia (orders.json, paymentmethods.json) bez refleksji
+ * i bez Jacksona - przy małych plikach większość czasu to start JVM i inicjalizacja databind, a nie
+ * sama optymalizacja. Zachowuje się jak {@link InputReader}: nieznane pola są pomijane, komentarze
+ * (// i /* *&#47;) dozwolone, liczby mogą być zapisane jako string. Liczby są przyjmowane w tych samych
+ * postaciach co w Jacksonie (patrz {@link #toInt}, {@link #toBigDecimal}). Plik gzip jest rozpakowywany,
+ * ale katalogi i wzorce glob obsługuje tylko {@link InputReader}.
+ */
+public class FastInputReader {
+
+    //liczba w składni JSON (bez '+', zer wiodących, "10." i ".5")
+    private static final Pattern JSON_NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    public List<Order> readOrders(String filepath) throws IOException {
+        Cursor cursor = new Cursor(read(filepath), filepath);
+        List<Order> orders = new ArrayList<>();
+        cursor.beginArray();
+        for (boolean first = true; cursor.hasNextElement(first); first = false) {
+            orders.add(readOrder(cursor));
+        }
+        cursor.expectEnd();
+        return orders;
+    }
+
+    public List<PaymentMethod> readPaymentMethods(String filepath) throws IOException {
+        Cursor cursor = new Cursor(read(filepath), filepath);
+        List<PaymentMethod> methods = new ArrayList<>();
+        cursor.beginArray();
+        for (boolean first = true; cursor.hasNextElement(first); first = false) {
+            methods.add(readPaymentMethod(cursor));
+        }
+        cursor.expectEnd();
+        return methods;
+    }
+
+    private static String read(String filepath) throws IOException {
+        byte[] bytes = Files.readAllBytes(Path.of(filepath));
+        if (bytes.length >= 2 && (bytes[0] & 0xff) == 0x1f && (bytes[1] & 0xff) == 0x8b) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                bytes = in.readAllBytes();
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Order readOrder(Cursor cursor) throws IOException {
+        String id = null;
+        BigDecimal value = null;
+        List<String> promotions = null;
+
+        cursor.beginObject();
+        String field;
+        for (boolean first = true; (field = cursor.nextField(first)) != null; first = false) {
+            switch (field) {
+                case "id" -> id = cursor.readScalar();
+                case "value" -> value = toBigDecimal(cursor);
+                case "promotions" -> promotions = readStringArray(cursor);
+                default -> cursor.skipValue();
+            }
+        }
+        return new Order(id, value, promotions);
+    }
+
+    private static PaymentMethod readPaymentMethod(Cursor cursor) throws IOException {
+        String id = null;
+        int discount = 0;
+        BigDecimal limit = null;
+
+        cursor.beginObject();
+        String field;
+        for (boolean first = true; (field = cursor.nextField(first)) != null; first = false) {
+            switch (field) {
+                case "id" -> id = cursor.readScalar();
+                case "discount" -> discount = toInt(cursor);
+                case "limit" -> limit = toBigDecimal(cursor);
+                default -> cursor.skipValue();
+            }
+        }
+        return new PaymentMethod(id, discount, limit);
+    }
+
+    private static List<String> readStringArray(Cursor cursor) throws IOException {
+        if (cursor.tryNull()) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        cursor.beginArray();
+        for (boolean first = true; cursor.hasNextElement(first); first = false) {
+            values.add(cursor.readScalar());
+        }
+        return values;
+    }
+
+    /**
+     * Jak Jackson: liczba JSON albo string z liczbą (obcięte spacje, dozwolony '+'); null, pusty string
+     * i "null" dają null
+     */
+    private static BigDecimal toBigDecimal(Cursor cursor) throws IOException {
+        boolean quoted = cursor.nextIsString();
+        String token = cursor.readScalar();
+        String text = numberText(cursor, token, quoted);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            throw cursor.error("Invalid number '" + token + "'");
+        }
+    }
+
+    /**
+     * Jak Jackson dla pola int: liczba JSON z częścią ułamkową jest obcinana (10.9 -> 10), string musi
+     * być liczbą całkowitą, wartość spoza zakresu int to błąd; null, pusty string i "null" dają 0
+     */
+    private static int toInt(Cursor cursor) throws IOException {
+        boolean quoted = cursor.nextIsString();
+        String token = cursor.readScalar();
+        String text = numberText(cursor, token, quoted);
+        if (text == null) {
+            return 0;
+        }
+        try {
+            if (quoted) {
+                return Integer.parseInt(text);
+            }
+            return new BigDecimal(text).setScale(0, RoundingMode.DOWN).intValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw cursor.error("Invalid integer '" + token + "'");
+        }
+    }
+
+    /**
+     * Tekst liczby do sparsowania albo null dla pustej wartości
+     */
+    private static String numberText(Cursor cursor, String token, boolean quoted) throws IOException {
+        if (token == null) {
+            return null;
+        }
+        if (quoted) {
+            String text = token.trim();
+            return text.isEmpty() || "null".equals(text) ? null : text;
+        }
+        if (!JSON_NUMBER.matcher(token).matches()) {
+            throw cursor.error("Invalid number '" + token + "'");
+        }
+        return token;
+    }
+
+    /**
+     * Pozycja w tekście JSON + podstawowe operacje tokenizera
+     */
+    private static final class Cursor {
+        private final String text;
+        private final String source;
+        private int pos;
+
+        Cursor(String text, String source) {
+            this.text = text;
+            this.source = source;
+            //BOM
+            this.pos = !text.isEmpty() && text.charAt(0) == '\uFEFF' ? 1 : 0;
+        }
+
+        void beginArray() throws IOException {
+            expect('[');
+        }
+
+        /**
+         * Czy w tablicy jest kolejny element (zjada ']' na końcu albo ',' przed kolejnym elementem)
+         */
+        boolean hasNextElement(boolean first) throws IOException {
+            if (peek() == ']') {
+                pos++;
+                return false;
+            }
+            if (!first) {
+                expect(',');
+            }
+            return true;
+        }
+
+        void beginObject() throws IOException {
+            expect('{');
+        }
+
+        /**
+         * Nazwa kolejnego pola (razem z ':') albo null na końcu obiektu
+         */
+        String nextField(boolean first) throws IOException {
+            if (peek() == '}') {
+                pos++;
+                return null;
+            }
+            if (!first) {
+                expect(',');
+            }
+            skipWhitespace();
+            String name = readString();
+            expect(':');
+            return name;
+        }
+
+        /**
+         * String, liczba albo literał jako tekst (null dla JSON null)
+         */
+        String readScalar() throws IOException {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            int start = pos;
+            while (pos < text.length() && isLiteralChar(text.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("Expected value");
+            }
+            String literal = text.substring(start, pos);
+            return "null".equals(literal) ? null : literal;
+        }
+
+        boolean nextIsString() throws IOException {
+            return peek() == '"';
+        }
+
+        boolean tryNull() throws IOException {
+            if (peek() == 'n' && text.startsWith("null", pos)) {
+                pos += 4;
+                return true;
+            }
+            return false;
+        }
+
+        void skipValue() throws IOException {
+            char c = peek();
+            if (c == '{') {
+                beginObject();
+                for (boolean first = true; nextField(first) != null; first = false) {
+                    skipValue();
+                }
+            } else if (c == '[') {
+                beginArray();
+                for (boolean first = true; hasNextElement(first); first = false) {
+                    skipValue();
+                }
+            } else {
+                readScalar();
+            }
+        }
+
+        void expectEnd() throws IOException {
+            skipWhitespace();
+            if (pos < text.length()) {
+                throw error("Unexpected content after end of array");
+            }
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder sb = null;
+            int start = pos;
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb == null ? text.substring(start, pos - 1) : sb.toString();
+                }
+                if (c == '\\') {
+                    if (sb == null) {
+                        sb = new StringBuilder(text.substring(start, pos - 1));
+                    }
+                    sb.append(readEscape());
+                } else if (sb != null) {
+                    sb.append(c);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private char readEscape() throws IOException {
+            if (pos >= text.length()) {
+                throw error("Unterminated escape");
+            }
+            char c = text.charAt(pos++);
+            return switch (c) {
+                case '"', '\\', '/' -> c;
+                case 'b' -> '\b';
+                case 'f' -> '\f';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 't' -> '\t';
+                case 'u' -> {
+                    if (pos + 4 > text.length()) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        char decoded = (char) Integer.parseInt(text, pos, pos + 4, 16);
+                        pos += 4;
+                        yield decoded;
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                }
+                default -> throw error("Invalid escape '\\" + c + "'");
+            };
+        }
+
+        private void expect(char expected) throws IOException {
+            if (next() != expected) {
+                pos--;
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private char next() throws IOException {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private char peek() throws IOException {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            return text.charAt(pos);
+        }
+
+        private void skipWhitespace() throws IOException {
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    pos++;
+                } else if (c == '/' && text.startsWith("//", pos)) {
+                    int end = text.indexOf('\n', pos);
+                    pos = end < 0 ? text.length() : end + 1;
+                } else if (c == '/' && text.startsWith("/*", pos)) {
+                    int end = text.indexOf("*/", pos + 2);
+                    if (end < 0) {
+                        throw error("Unterminated comment");
+                    }
+                    pos = end + 2;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private static boolean isLiteralChar(char c) {
+            return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || c == '-' || c == '+' || c == '.';
+        }
+
+        IOException error(String message) {
+            int line = 1;
+            for (int i = 0; i < Math.min(pos, text.length()); i++) {
+                if (text.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return new IOException(message + " in " + source + " at line " + line);
+        }
+    }
+}
@@ -1,23 +1,57 @@
 package com.company.paymentoptimizer.io;
 
 import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
 import com.company.paymentoptimizer.model.PaymentMethod;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Class responsible for reading input files (JSON)
+ * Ścieżka zamówień może wskazywać jeden plik, katalog (wszystkie *.json i *.json.gz w nim) albo wzorzec
+ * glob (np. exports/orders-*.json.gz). Pliki gzip są rozpakowywane w locie (rozpoznawane po nagłówku).
+ * Kilka plików (shardów) jest parsowanych równolegle, a wynik łączony w kolejności nazw plików
+ * z kontrolą powtórzonych id zamówień.
  */
 public class InputReader {
     public ObjectMapper mapper;
 
+    //maksymalna liczba równolegle parsowanych shardów
+    private final int parserThreads;
+
     public InputReader(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public InputReader(int parserThreads) {
+        if (parserThreads <= 0) {
+            throw new IllegalArgumentException("Parser thread count must be positive: " + parserThreads);
+        }
+        this.parserThreads = parserThreads;
         mapper = new ObjectMapper();
 
         //ignore fields that are not in Java class
@@ -26,15 +60,228 @@ public class InputReader {
 
         //jeśli potrzebny custom BigDecimal deserializer to tutaj dodac jako SimpleModule
         //jak np potrzebujemy , zamiast . w liczbach
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(OrderTable.class, new OrderTableDeserializer());
+        mapper.registerModule(module);
     }
 
     public List<Order> readOrders (String filepath) throws IOException {
-        return Arrays.asList(mapper.readValue(new File(filepath), Order[].class));
+        List<Path> sources = resolveSources(filepath);
+        if (isSingleFile(filepath)) {
+            //jeden wskazany plik - jak dotąd, bez kontroli powtórzeń
+            return readOrderArray(sources.getFirst());
+        }
+
+        //łączenie w kolejności plików - od kolejności zależą remisy w optymalizatorze
+        List<List<Order>> shards = parseShards(sources, this::readOrderArray);
+        List<Order> orders = new ArrayList<>();
+        Map<String, Path> seenIds = new HashMap<>();
+        for (int i = 0; i < sources.size(); i++) {
+            for (Order order : shards.get(i)) {
+                checkDuplicate(seenIds, order.getId(), sources.get(i));
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Odczyt zamówień do zwartej tabeli kolumnowej (bez obiektów Order) - te same źródła co {@link #readOrders(String)}
+     */
+    public OrderTable readOrderTable(String filepath) throws IOException {
+        List<Path> sources = resolveSources(filepath);
+        if (isSingleFile(filepath)) {
+            return readOrderTableFile(sources.getFirst());
+        }
+
+        List<OrderTable> shards = parseShards(sources, this::readOrderTableFile);
+        OrderTable.Builder builder = new OrderTable.Builder();
+        Map<String, Path> seenIds = new HashMap<>();
+        for (int i = 0; i < sources.size(); i++) {
+            OrderTable shard = shards.get(i);
+            for (int index = 0; index < shard.size(); index++) {
+                checkDuplicate(seenIds, shard.getId(index), sources.get(i));
+            }
+            builder.addAll(shard);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Strumieniowy odczyt zamówień - każde zamówienie jest przekazywane do consumer zaraz po sparsowaniu,
+     * bez budowania całej tablicy w pamięci. Shardy są czytane po kolei (zachowujemy kolejność).
+     */
+    public void readOrders(String filepath, Consumer<Order> consumer) throws IOException {
+        List<Path> sources = resolveSources(filepath);
+        Map<String, Path> seenIds = isSingleFile(filepath) ? null : new HashMap<>();
+        ObjectReader orderReader = mapper.readerFor(Order.class);
+        for (Path source : sources) {
+            try (InputStream in = open(source);
+                 JsonParser parser = mapper.getFactory().createParser(in)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException("Expected JSON array of orders in " + source);
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Order order = orderReader.readValue(parser);
+                    if (seenIds != null) {
+                        checkDuplicate(seenIds, order.getId(), source);
+                    }
+                    consumer.accept(order);
+                }
+            }
+        }
     }
 
     public List<PaymentMethod> readPaymentMethods (String filepath) throws IOException {
-        return Arrays.asList(mapper.readValue(new File(filepath), PaymentMethod[].class));
+        try (InputStream in = open(Path.of(filepath))) {
+            return Arrays.asList(mapper.readValue(in, PaymentMethod[].class));
+        }
+    }
+
+    /**
+     * Pliki wejściowe dla ścieżki, katalogu albo wzorca glob - posortowane po ścieżce
+     */
+    static List<Path> resolveSources(String filepath) throws IOException {
+        if (isPlainPath(filepath)) {
+            Path path = Path.of(filepath);
+            if (!Files.isDirectory(path)) {
+                return List.of(path);
+            }
+            try (Stream<Path> files = Files.list(path)) {
+                return requireAny(files.filter(Files::isRegularFile)
+                        .filter(file -> isJsonFile(file.getFileName().toString()))
+                        .sorted()
+                        .toList(), filepath);
+            }
+        }
+
+        //katalog bazowy to część ścieżki przed pierwszym znakiem wzorca
+        int wildcard = firstGlobChar(filepath);
+        int separator = Math.max(filepath.lastIndexOf('/', wildcard), filepath.lastIndexOf('\\', wildcard));
+        Path base = separator < 0 ? Path.of(".") : Path.of(filepath.substring(0, separator + 1));
+        String glob = filepath.substring(separator + 1);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        int maxDepth = glob.contains("**") ? Integer.MAX_VALUE : (int) glob.chars().filter(c -> c == '/').count() + 1;
+        try (Stream<Path> files = Files.walk(base, maxDepth)) {
+            return requireAny(files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(base.relativize(file)))
+                    .sorted()
+                    .toList(), filepath);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardParser<T> {
+        T parse(Path source) throws IOException;
+    }
+
+    /**
+     * Równoległe parsowanie plików na ograniczonej puli - wyniki w kolejności plików
+     */
+    private <T> List<T> parseShards(List<Path> sources, ShardParser<T> shardParser) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parserThreads, sources.size()));
+        try {
+            List<Future<T>> shards = new ArrayList<>(sources.size());
+            for (Path source : sources) {
+                shards.add(executor.submit(() -> shardParser.parse(source)));
+            }
+            List<T> results = new ArrayList<>(sources.size());
+            for (Future<T> shard : shards) {
+                results.add(get(shard));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading input files", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private OrderTable readOrderTableFile(Path source) throws IOException {
+        try (InputStream in = open(source)) {
+            return mapper.readValue(in, OrderTable.class);
+        } catch (IOException e) {
+            throw new IOException("Could not read orders from " + source + ": " + e.getMessage(), e);
+        }
     }
 
+    private List<Order> readOrderArray(Path source) throws IOException {
+        try (InputStream in = open(source)) {
+            return Arrays.asList(mapper.readValue(in, Order[].class));
+        } catch (IOException e) {
+            throw new IOException("Could not read orders from " + source + ": " + e.getMessage(), e);
+        }
+    }
 
+    /**
+     * Strumień pliku, rozpakowywany w locie jeśli zaczyna się nagłówkiem gzip
+     */
+    private static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024);
+        try {
+            in.mark(2);
+            int first = in.read();
+            int second = in.read();
+            in.reset();
+            if (first == 0x1f && second == 0x8b) {
+                return new GZIPInputStream(in, 64 * 1024);
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static void checkDuplicate(Map<String, Path> seenIds, String orderId, Path source) throws IOException {
+        Path previous = seenIds.putIfAbsent(orderId, source);
+        if (previous != null) {
+            throw new IOException("Duplicate order id " + orderId + " in " + source
+                    + (previous.equals(source) ? "" : " (already read from " + previous + ")"));
+        }
+    }
+
+    private static <T> T get(Future<T> shard) throws IOException, InterruptedException {
+        try {
+            return shard.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static List<Path> requireAny(List<Path> files, String filepath) throws IOException {
+        if (files.isEmpty()) {
+            throw new IOException("No order files found for " + filepath);
+        }
+        return files;
+    }
+
+    private static boolean isJsonFile(String name) {
+        return name.endsWith(".json") || name.endsWith(".json.gz");
+    }
+
+    private static boolean isSingleFile(String filepath) {
+        return isPlainPath(filepath) && !Files.isDirectory(Path.of(filepath));
+    }
+
+    private static boolean isPlainPath(String filepath) {
+        return firstGlobChar(filepath) < 0;
+    }
+
+    private static int firstGlobChar(String filepath) {
+        for (int i = 0; i < filepath.length(); i++) {
+            char c = filepath.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
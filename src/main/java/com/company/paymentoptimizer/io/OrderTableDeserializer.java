@@ -0,0 +1,206 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.OrderTable;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tablica zamówień z JSON prosto do {@link OrderTable} - na poziomie tokenów, bez tworzenia obiektów
+ * {@link com.company.paymentoptimizer.model.Order}. Format i tolerancja jak przy zwykłym odczycie:
+ * nieznane pola są pomijane, wartość może być liczbą albo stringiem, promotions może być null.
+ * Zwykła wartość ("123.45", do 2 miejsc po przecinku) jest czytana prosto z bufora parsera do groszy, a nazwy
+ * promocji są porównywane ze słownikiem na znakach - zamówienie nie tworzy wtedy BigDecimal ani Stringów
+ * promocji. Inne zapisy wartości (wykładnik, spacje, więcej miejsc) idą przez BigDecimal jak wcześniej.
+ */
+public class OrderTableDeserializer extends StdDeserializer<OrderTable> {
+
+    public OrderTableDeserializer() {
+        super(OrderTable.class);
+    }
+
+    @Override
+    public OrderTable deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartArrayToken()) {
+            return (OrderTable) context.handleUnexpectedToken(OrderTable.class, parser);
+        }
+
+        OrderTable.Builder builder = new OrderTable.Builder();
+        List<String> promotions = new ArrayList<>();
+        PromotionNames promotionNames = new PromotionNames();
+        PlainValue plainValue = new PlainValue();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                context.reportWrongTokenException(OrderTable.class, JsonToken.START_OBJECT, "Expected order object");
+            }
+            String id = null;
+            BigDecimal value = null;
+            boolean plain = false;
+            promotions.clear();
+
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken valueToken = parser.nextToken();
+                switch (field) {
+                    case "id" -> id = valueToken == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                    case "value" -> {
+                        plain = isText(valueToken) && plainValue.parse(parser.getTextCharacters(),
+                                parser.getTextOffset(), parser.getTextLength());
+                        value = plain ? null : readDecimal(parser, context, valueToken);
+                    }
+                    case "promotions" -> readPromotions(parser, context, valueToken, promotions, promotionNames);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            try {
+                if (plain) {
+                    builder.add(id, plainValue.cents, plainValue.scale, promotions);
+                } else {
+                    builder.add(id, value, promotions);
+                }
+            } catch (IllegalArgumentException e) {
+                context.reportInputMismatch(OrderTable.class, e.getMessage());
+            }
+        }
+        return builder.build();
+    }
+
+    private static BigDecimal readDecimal(JsonParser parser, DeserializationContext context, JsonToken token)
+            throws IOException {
+        return switch (token) {
+            case VALUE_NULL -> null;
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getDecimalValue();
+            case VALUE_STRING -> {
+                try {
+                    yield new BigDecimal(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    yield (BigDecimal) context.handleWeirdStringValue(BigDecimal.class, parser.getText(),
+                            "not a valid number");
+                }
+            }
+            default -> (BigDecimal) context.handleUnexpectedToken(BigDecimal.class, parser);
+        };
+    }
+
+    private static boolean isText(JsonToken token) {
+        return token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT
+                || token == JsonToken.VALUE_STRING;
+    }
+
+    private static void readPromotions(JsonParser parser, DeserializationContext context, JsonToken token,
+                                       List<String> promotions, PromotionNames names) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            context.reportWrongTokenException(OrderTable.class, JsonToken.START_ARRAY, "Expected promotions array");
+        }
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            promotions.add(element == JsonToken.VALUE_STRING
+                    ? names.get(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())
+                    : parser.getValueAsString());
+        }
+    }
+
+    /**
+     * Wartość zapisana jako cyfry z opcjonalną częścią ułamkową (1 - 2 cyfry) - wynik w groszach i skali z wejścia
+     */
+    private static final class PlainValue {
+        //więcej cyfr mogłoby przepełnić long w groszach - taka wartość idzie przez BigDecimal
+        private static final int MAX_DIGITS = 16;
+
+        private long cents;
+        private int scale;
+
+        boolean parse(char[] text, int offset, int length) {
+            long unscaled = 0;
+            int digits = 0;
+            int dot = -1;
+            for (int i = offset; i < offset + length; i++) {
+                char c = text[i];
+                if (c >= '0' && c <= '9') {
+                    unscaled = unscaled * 10 + (c - '0');
+                    digits++;
+                } else if (c == '.' && dot < 0 && digits > 0) {
+                    dot = i;
+                } else {
+                    return false;
+                }
+            }
+            int fraction = dot < 0 ? 0 : offset + length - dot - 1;
+            if (digits == 0 || digits > MAX_DIGITS || (dot >= 0 && fraction == 0) || fraction > 2) {
+                return false;
+            }
+            scale = fraction;
+            cents = fraction == 2 ? unscaled : fraction == 1 ? unscaled * 10 : unscaled * 100;
+            return true;
+        }
+    }
+
+    /**
+     * Słownik nazw promocji wyszukiwany po znakach z bufora parsera (otwarte adresowanie) - każda nazwa
+     * jest tworzona jako String tylko raz
+     */
+    private static final class PromotionNames {
+        private String[] names = new String[64];
+        private int count = 0;
+
+        String get(char[] text, int offset, int length) {
+            int hash = 0;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + text[i];
+            }
+            int mask = names.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                String name = names[slot];
+                if (name == null) {
+                    name = new String(text, offset, length);
+                    names[slot] = name;
+                    if (++count * 2 > names.length) {
+                        grow();
+                    }
+                    return name;
+                }
+                if (matches(name, text, offset, length)) {
+                    return name;
+                }
+            }
+        }
+
+        private static boolean matches(String name, char[] text, int offset, int length) {
+            if (name.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name.charAt(i) != text[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            String[] old = names;
+            names = new String[old.length * 2];
+            int mask = names.length - 1;
+            for (String name : old) {
+                if (name != null) {
+                    int slot = name.hashCode() & mask;
+                    while (names[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    names[slot] = name;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.Allocation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Przyrostowe generowanie raportu - alokacje można dopisywać na bieżąco (np. w trakcie optymalizacji),
+ * a podsumowanie wykorzystania metod płatności jest dopisywane w {@link #finish()}.
+ */
+public class ReportWriter {
+
+    private final Appendable out;
+    private final Map<String, BigDecimal> paymentUsage = new HashMap<>();
+
+    public ReportWriter(Appendable out) {
+        this.out = out;
+    }
+
+    public void append(Allocation allocation) {
+        write(allocation + "\n\n");
+
+        paymentUsage.merge(
+                allocation.getPrimaryMethod().getId(),
+                allocation.getAmountFromPrimaryMethod(),
+                BigDecimal::add
+        );
+
+        allocation.getSecondaryPayment().ifPresent(secondary ->
+                paymentUsage.merge(
+                        secondary.paymentMethod().getId(),
+                        secondary.amount(),
+                        BigDecimal::add
+                )
+        );
+    }
+
+    /**
+     * Dopisanie podsumowania: suma wydana każdą metodą, posortowane po id
+     */
+    public void finish() {
+        StringBuilder summary = new StringBuilder("=== Result ===\n");
+        paymentUsage.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    BigDecimal total = entry.getValue().setScale(2, RoundingMode.HALF_UP);
+                    summary.append(entry.getKey()).append(": ").append(total).append("\n");
+                });
+        write(summary);
+    }
+
+    private void write(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
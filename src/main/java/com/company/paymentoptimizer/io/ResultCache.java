@@ -0,0 +1,234 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Lokalny cache wyników na dysku - klucz to SHA-256 kanonicznej postaci wejścia (po sparsowaniu, więc
+ * formatowanie JSON, kolejność pól i kolejność promocji nie mają znaczenia) razem z wersją algorytmu.
+ * Każdy wpis to osobny plik z nagłówkiem wersji i alokacjami w formacie {@link AllocationCodec}, a po nich
+ * sekcja z id zamówień, których nie dało się opłacić (trafienie wypisuje te same komunikaty co liczenie).
+ * Rozmiar katalogu jest ograniczony - przy zapisie usuwamy najdawniej używane wpisy (LRU po czasie
+ * modyfikacji, odczyt go odświeża).
+ */
+public class ResultCache {
+
+    private static final String EXTENSION = ".alloc";
+    //format 2: sekcja zamówień nieopłaconych - wpisy bez niej są traktowane jak nieaktualne
+    private static final String VERSION_HEADER = "# format 2 solver ";
+    private static final String UNALLOCATED_SECTION = "# unallocated";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final String solverVersion;
+
+    /**
+     * Zapisany wynik: alokacje i zamówienia bez alokacji (w kolejności komunikatów optymalizatora)
+     */
+    public record CachedResult(List<Allocation> allocations, List<Order> unallocatedOrders) {
+    }
+
+    public ResultCache(Path directory, long maxBytes, String solverVersion) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.solverVersion = solverVersion;
+    }
+
+    /**
+     * Kanoniczny hash wejścia: id i wartości zamówień (w kolejności wejścia - od niej zależą remisy
+     * w algorytmie), posortowane promocje, id/rabaty/limity metod oraz wersja algorytmu
+     */
+    public String key(List<Order> orders, List<PaymentMethod> paymentMethods) {
+        return inputHash(solverVersion, orders, paymentMethods);
+    }
+
+    /**
+     * Ten sam hash co {@link #key(List, List)} bez instancji cache (np. nagłówek pliku punktów kontrolnych)
+     */
+    public static String inputHash(String solverVersion, List<Order> orders, List<PaymentMethod> paymentMethods) {
+        MessageDigest digest = sha256();
+        update(digest, solverVersion);
+        update(digest, Integer.toString(orders.size()));
+        for (Order order : orders) {
+            update(digest, order.getId());
+            update(digest, plain(order.getValue()));
+            List<String> promotions = new ArrayList<>(order.getPromotions());
+            promotions.sort(Comparator.naturalOrder());
+            update(digest, Integer.toString(promotions.size()));
+            for (String promotion : promotions) {
+                update(digest, promotion);
+            }
+        }
+        update(digest, Integer.toString(paymentMethods.size()));
+        for (PaymentMethod method : paymentMethods) {
+            update(digest, method.getId());
+            update(digest, Integer.toString(method.getDiscount()));
+            update(digest, plain(method.getLimit()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return zapisany wynik (z obiektami z bieżącego wejścia) albo empty przy braku lub nieaktualnym wpisie
+     */
+    public Optional<CachedResult> lookup(String key, List<Order> orders, List<PaymentMethod> paymentMethods)
+            throws IOException {
+        Path entry = directory.resolve(key + EXTENSION);
+        if (!Files.exists(entry)) {
+            return Optional.empty();
+        }
+
+        Map<String, Order> ordersById = new HashMap<>();
+        for (Order order : orders) {
+            ordersById.put(order.getId(), order);
+        }
+        Map<String, PaymentMethod> methodsById = new HashMap<>();
+        for (PaymentMethod method : paymentMethods) {
+            methodsById.put(method.getId(), method);
+        }
+
+        List<Allocation> allocations = new ArrayList<>();
+        List<Order> unallocatedOrders = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(entry, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (!(VERSION_HEADER + solverVersion).equals(header)) {
+                //wynik starszej wersji algorytmu - nie używamy
+                Files.deleteIfExists(entry);
+                return Optional.empty();
+            }
+            String line;
+            boolean unallocatedSection = false;
+            while ((line = reader.readLine()) != null) {
+                if (!unallocatedSection && UNALLOCATED_SECTION.equals(line)) {
+                    //linia alokacji zawsze ma tabulatory, więc nie pomylimy jej z nagłówkiem sekcji
+                    unallocatedSection = true;
+                } else if (unallocatedSection) {
+                    Order order = ordersById.get(AllocationCodec.unescape(line));
+                    if (order == null) {
+                        throw new IllegalArgumentException("Unknown order id: " + line);
+                    }
+                    unallocatedOrders.add(order);
+                } else {
+                    allocations.add(AllocationCodec.decode(line, ordersById, methodsById));
+                }
+            }
+            if (!unallocatedSection) {
+                throw new IllegalArgumentException("Cache entry without unallocated section: " + entry);
+            }
+        } catch (IllegalArgumentException e) {
+            //uszkodzony wpis (albo kolizja hasha) - traktujemy jak brak
+            Files.deleteIfExists(entry);
+            return Optional.empty();
+        }
+
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        return Optional.of(new CachedResult(allocations, unallocatedOrders));
+    }
+
+    public void store(String key, List<Allocation> allocations, List<Order> unallocatedOrders) throws IOException {
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(VERSION_HEADER + solverVersion);
+                writer.write('\n');
+                for (Allocation allocation : allocations) {
+                    writer.write(AllocationCodec.encode(allocation));
+                    writer.write('\n');
+                }
+                writer.write(UNALLOCATED_SECTION);
+                writer.write('\n');
+                for (Order order : unallocatedOrders) {
+                    writer.write(AllocationCodec.escape(order.getId()));
+                    writer.write('\n');
+                }
+            }
+            Path entry = directory.resolve(key + EXTENSION);
+            try {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        evict();
+    }
+
+    /**
+     * Usuwa najdawniej używane wpisy, aż suma rozmiarów zmieści się w limicie
+     */
+    private void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            entries = files.filter(path -> path.getFileName().toString().endsWith(EXTENSION)).toList();
+        }
+
+        Map<Path, FileTime> lastUsed = new HashMap<>();
+        long total = 0;
+        for (Path entry : entries) {
+            lastUsed.put(entry, Files.getLastModifiedTime(entry));
+            total += Files.size(entry);
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        List<Path> oldestFirst = new ArrayList<>(entries);
+        oldestFirst.sort(Comparator.comparing(lastUsed::get));
+        for (Path entry : oldestFirst) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long size = Files.size(entry);
+            Files.deleteIfExists(entry);
+            total -= size;
+        }
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "null" : value.toPlainString();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = (value == null ? "\u0000null" : value).getBytes(StandardCharsets.UTF_8);
+        //długość przed wartością - bez niejednoznaczności przy sklejaniu pól
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
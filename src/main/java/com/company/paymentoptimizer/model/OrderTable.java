@@ -0,0 +1,337 @@
+package com.company.paymentoptimizer.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Kolumnowy zapis zamówień - zamiast obiektu {@link Order} na zamówienie (String, BigDecimal, ArrayList)
+ * trzymamy kilka tablic prymitywów:
+ *  - wartości w groszach (long[]) + skala wartości z wejścia (byte[]),
+ *  - id zamówień jako bajty UTF-8 w jednej tablicy + offsety,
+ *  - promocje jako spłaszczona tablica int[] + offsety, gdzie int to indeks w słowniku nazw promocji
+ *    (każda nazwa metody płatności jest trzymana raz).
+ * Zamówienie zajmuje kilkadziesiąt bajtów zamiast kilkuset. Obiekty {@link Order} są tworzone dopiero
+ * na żądanie ({@link #getOrder(int)}, {@link #asOrders()}). Wartości są przechowywane z dokładnością do
+ * groszy - wartość z dokładniejszą częścią ułamkową jest odrzucana. Skala z wejścia jest zachowana, więc
+ * {@link #getValue(int)} zwraca to samo co zwykły odczyt ("293.0" zostaje "293.0", a raport się nie zmienia).
+ */
+public final class OrderTable {
+
+    //grosze wartości o skali 0, 1 i 2 są wielokrotnością 100, 10 i 1
+    private static final long[] CENTS_PER_SCALE_UNIT = {100, 10, 1};
+
+    private final int size;
+    private final long[] valueCents;
+    private final byte[] valueScales;
+    private final byte[] idBytes;
+    private final int[] idOffsets;
+    private final int[] promotionOffsets;
+    private final int[] promotions;
+    private final String[] promotionNames;
+
+    private OrderTable(int size, long[] valueCents, byte[] valueScales, byte[] idBytes, int[] idOffsets,
+                       int[] promotionOffsets, int[] promotions, String[] promotionNames) {
+        this.size = size;
+        this.valueCents = valueCents;
+        this.valueScales = valueScales;
+        this.idBytes = idBytes;
+        this.idOffsets = idOffsets;
+        this.promotionOffsets = promotionOffsets;
+        this.promotions = promotions;
+        this.promotionNames = promotionNames;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getId(int index) {
+        checkIndex(index);
+        return new String(idBytes, idOffsets[index], idOffsets[index + 1] - idOffsets[index], StandardCharsets.UTF_8);
+    }
+
+    public long getValueCents(int index) {
+        checkIndex(index);
+        return valueCents[index];
+    }
+
+    public BigDecimal getValue(int index) {
+        BigDecimal value = BigDecimal.valueOf(getValueCents(index), 2);
+        int scale = valueScales[index];
+        //grosze dzielą się bez reszty przez 10^(2 - scale) - sprawdzone przy dodaniu
+        return scale == 2 ? value : value.setScale(scale, RoundingMode.UNNECESSARY);
+    }
+
+    public int getPromotionCount(int index) {
+        checkIndex(index);
+        return promotionOffsets[index + 1] - promotionOffsets[index];
+    }
+
+    /**
+     * Indeks w słowniku nazw promocji ({@link #getPromotionName(int)}) dla {@code position}-tej promocji zamówienia
+     */
+    public int getPromotion(int index, int position) {
+        if (position < 0 || position >= getPromotionCount(index)) {
+            throw new IndexOutOfBoundsException("Promotion " + position + " of order " + index);
+        }
+        return promotions[promotionOffsets[index] + position];
+    }
+
+    public int getPromotionDictionarySize() {
+        return promotionNames.length;
+    }
+
+    public String getPromotionName(int promotion) {
+        return promotionNames[promotion];
+    }
+
+    /**
+     * Nowy obiekt zamówienia tylko do odczytu - trzyma indeks i wartość, a id i promocje czyta z tabeli
+     * przy każdym odczycie (alokacje wyniku nie trzymają osobnego Stringa id na zamówienie)
+     */
+    public Order getOrder(int index) {
+        checkIndex(index);
+        return new TableOrder(index, getValue(index));
+    }
+
+    /**
+     * Lista zamówień tylko do odczytu - każde get() tworzy nowy obiekt {@link Order}
+     */
+    public List<Order> asOrders() {
+        return new OrderList();
+    }
+
+    /**
+     * Szacowany rozmiar tablic w bajtach (bez nagłówków obiektów i słownika)
+     */
+    public long estimatedBytes() {
+        return 8L * valueCents.length + valueScales.length + idBytes.length + 4L * idOffsets.length
+                + 4L * promotionOffsets.length + 4L * promotions.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Order index " + index + " out of " + size);
+        }
+    }
+
+    private final class OrderList extends AbstractList<Order> implements RandomAccess {
+        @Override
+        public Order get(int index) {
+            return getOrder(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private final class TableOrder extends Order {
+        private final int index;
+
+        TableOrder(int index, BigDecimal value) {
+            super(null, value, List.of());
+            this.index = index;
+        }
+
+        @Override
+        public String getId() {
+            return OrderTable.this.getId(index);
+        }
+
+        @Override
+        public List<String> getPromotions() {
+            return new PromotionList(promotionOffsets[index], promotionOffsets[index + 1]);
+        }
+
+        @Override
+        public void setId(String id) {
+            throw new UnsupportedOperationException("Order from OrderTable is read-only");
+        }
+
+        @Override
+        public void setValue(BigDecimal value) {
+            throw new UnsupportedOperationException("Order from OrderTable is read-only");
+        }
+
+        @Override
+        public void setPromotions(List<String> promotions) {
+            throw new UnsupportedOperationException("Order from OrderTable is read-only");
+        }
+    }
+
+    private final class PromotionList extends AbstractList<String> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        PromotionList(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Promotion " + index + " out of " + (to - from));
+            }
+            return promotionNames[promotions[from + index]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Wypełnianie tabeli zamówienie po zamówieniu (np. przez deserializer JSON); tablice rosną podwajając się
+     */
+    public static final class Builder {
+        private int size = 0;
+        private long[] valueCents = new long[16];
+        private byte[] valueScales = new byte[16];
+        private byte[] idBytes = new byte[256];
+        private int idLength = 0;
+        private int[] idOffsets = new int[17];
+        private int[] promotionOffsets = new int[17];
+        private int[] promotions = new int[32];
+        private int promotionCount = 0;
+        private final Map<String, Integer> promotionIndex = new HashMap<>();
+        private final List<String> promotionNames = new ArrayList<>();
+
+        /**
+         * @throws IllegalArgumentException gdy brakuje id lub wartości albo wartość ma więcej niż 2 miejsca po przecinku
+         */
+        public Builder add(String id, BigDecimal value, List<String> orderPromotions) {
+            if (id == null) {
+                throw new IllegalArgumentException("Order without id");
+            }
+            if (value == null) {
+                throw new IllegalArgumentException("Order " + id + " has no value");
+            }
+            long cents;
+            try {
+                cents = value.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Order " + id + " value " + value.toPlainString()
+                        + " cannot be stored in cents", e);
+            }
+            //np. "0E+200" - zero mieści się w groszach, ale skali nie da się zapisać w bajcie
+            if (value.scale() < Byte.MIN_VALUE || value.scale() > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Order " + id + " value " + value
+                        + " cannot be stored in cents");
+            }
+            return append(id.getBytes(StandardCharsets.UTF_8), cents, (byte) value.scale(), orderPromotions);
+        }
+
+        /**
+         * Wariant bez BigDecimal (np. wartość sparsowana prosto z tekstu JSON)
+         * @param valueCents wartość w groszach
+         * @param valueScale skala wartości z wejścia (0 - 2), np. 1 dla "293.0"
+         * @throws IllegalArgumentException gdy brakuje id, skala jest spoza 0 - 2 albo grosze nie pasują do skali
+         */
+        public Builder add(String id, long valueCents, int valueScale, List<String> orderPromotions) {
+            if (id == null) {
+                throw new IllegalArgumentException("Order without id");
+            }
+            if (valueScale < 0 || valueScale > 2 || valueCents % CENTS_PER_SCALE_UNIT[valueScale] != 0) {
+                throw new IllegalArgumentException("Order " + id + " value " + valueCents + " cents with scale "
+                        + valueScale + " cannot be stored");
+            }
+            return append(id.getBytes(StandardCharsets.UTF_8), valueCents, (byte) valueScale, orderPromotions);
+        }
+
+        /**
+         * Dołączenie wszystkich zamówień innej tabeli (np. kolejnego shardu wejścia)
+         */
+        public Builder addAll(OrderTable table) {
+            int[] translated = new int[table.promotionNames.length];
+            for (int i = 0; i < translated.length; i++) {
+                translated[i] = intern(table.promotionNames[i]);
+            }
+            for (int index = 0; index < table.size; index++) {
+                int from = table.promotionOffsets[index];
+                int count = table.promotionOffsets[index + 1] - from;
+                ensurePromotionCapacity(count);
+                for (int i = 0; i < count; i++) {
+                    promotions[promotionCount++] = translated[table.promotions[from + i]];
+                }
+                appendOrder(Arrays.copyOfRange(table.idBytes, table.idOffsets[index], table.idOffsets[index + 1]),
+                        table.valueCents[index], table.valueScales[index]);
+            }
+            return this;
+        }
+
+        public OrderTable build() {
+            return new OrderTable(size,
+                    Arrays.copyOf(valueCents, size),
+                    Arrays.copyOf(valueScales, size),
+                    Arrays.copyOf(idBytes, idLength),
+                    Arrays.copyOf(idOffsets, size + 1),
+                    Arrays.copyOf(promotionOffsets, size + 1),
+                    Arrays.copyOf(promotions, promotionCount),
+                    promotionNames.toArray(new String[0]));
+        }
+
+        private Builder append(byte[] id, long cents, byte scale, List<String> orderPromotions) {
+            //promocje od razu do spłaszczonej tablicy - bez tablicy indeksów na zamówienie
+            int count = orderPromotions != null ? orderPromotions.size() : 0;
+            ensurePromotionCapacity(count);
+            for (int i = 0; i < count; i++) {
+                promotions[promotionCount++] = intern(orderPromotions.get(i));
+            }
+            return appendOrder(id, cents, scale);
+        }
+
+        /**
+         * Zamówienie, którego promocje są już dopisane na końcu tablicy promocji
+         */
+        private Builder appendOrder(byte[] id, long cents, byte scale) {
+            if (size == valueCents.length) {
+                valueCents = Arrays.copyOf(valueCents, size * 2);
+                valueScales = Arrays.copyOf(valueScales, size * 2);
+                idOffsets = Arrays.copyOf(idOffsets, size * 2 + 1);
+                promotionOffsets = Arrays.copyOf(promotionOffsets, size * 2 + 1);
+            }
+            valueCents[size] = cents;
+            valueScales[size] = scale;
+
+            if (idLength + id.length > idBytes.length) {
+                idBytes = Arrays.copyOf(idBytes, Math.max(idBytes.length * 2, idLength + id.length));
+            }
+            System.arraycopy(id, 0, idBytes, idLength, id.length);
+            idLength += id.length;
+            idOffsets[size + 1] = idLength;
+            promotionOffsets[size + 1] = promotionCount;
+
+            size++;
+            return this;
+        }
+
+        private void ensurePromotionCapacity(int count) {
+            if (promotionCount + count > promotions.length) {
+                promotions = Arrays.copyOf(promotions, Math.max(promotions.length * 2, promotionCount + count));
+            }
+        }
+
+        private int intern(String promotion) {
+            Integer existing = promotionIndex.get(promotion);
+            if (existing != null) {
+                return existing;
+            }
+            int index = promotionNames.size();
+            promotionIndex.put(promotion, index);
+            promotionNames.add(promotion);
+            return index;
+        }
+    }
+}
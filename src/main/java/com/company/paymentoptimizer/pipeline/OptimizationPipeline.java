@@ -0,0 +1,165 @@
+package com.company.paymentoptimizer.pipeline;
+
+import com.company.paymentoptimizer.algo.Optimizer;
+import com.company.paymentoptimizer.io.InputReader;
+import com.company.paymentoptimizer.io.ReportWriter;
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Potokowe przetwarzanie: parsowanie zamówień, generowanie kandydatów fazy 1 i wypisywanie wyniku
+ * działają równolegle na osobnych wątkach, połączone ograniczonymi kolejkami (pełna kolejka blokuje
+ * producenta - backpressure).
+ *   [parser] --orders--> [kandydaci + zatwierdzanie (wątek wywołujący)] --allocations--> [writer]
+ * Czeka tylko to co wymaga globalnej kolejności - sortowanie i zatwierdzanie kandydatów zaczyna się
+ * dopiero po sparsowaniu wszystkich zamówień. Wynik jest identyczny z trybem sekwencyjnym.
+ * Raport jest wypisywany w trakcie optymalizacji, więc komunikaty o nieopłaconych zamówieniach idą na stderr
+ * (w trybie sekwencyjnym są na stdout przed raportem) - strumień raportu zawiera tylko raport.
+ */
+public class OptimizationPipeline {
+
+    //znaczniki końca strumienia (porównywane po referencji)
+    private static final Order END_OF_ORDERS = new Order();
+    private static final Allocation END_OF_ALLOCATIONS = new Allocation(null, null, null, null, null);
+
+    private final InputReader inputReader;
+    private final int queueCapacity;
+
+    public OptimizationPipeline(InputReader inputReader, int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.inputReader = inputReader;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param configurer dodatkowa konfiguracja optymalizatora (np. trace) przed rozpoczęciem przetwarzania
+     * @param out        tu trafia raport w tym samym formacie co {@link Optimizer#generateReport(List)}
+     * @return zatwierdzone alokacje
+     */
+    public List<Allocation> run(String ordersPath, String paymentMethodsPath, Consumer<Optimizer> configurer,
+                                PrintStream out) throws IOException, InterruptedException {
+        BlockingQueue<Order> orderQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> parseFailure = new AtomicReference<>();
+
+        //1. parsowanie zamówień rusza od razu, równolegle z wczytywaniem metod płatności
+        Thread parser = new Thread(() -> {
+            try {
+                inputReader.readOrders(ordersPath, order -> put(orderQueue, order));
+            } catch (Throwable e) {
+                parseFailure.set(e);
+            } finally {
+                putQuietly(orderQueue, END_OF_ORDERS);
+            }
+        }, "pipeline-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        List<PaymentMethod> paymentMethods;
+        try {
+            paymentMethods = inputReader.readPaymentMethods(paymentMethodsPath);
+        } catch (IOException e) {
+            parser.interrupt();
+            throw e;
+        }
+        Optimizer optimizer = new Optimizer(new ArrayList<>(), paymentMethods);
+        optimizer.setUnallocatedOrderListener(order -> System.err.println("Unallocated order" + order.getId()));
+        configurer.accept(optimizer);
+
+        //3. wypisywanie alokacji w miarę ich zatwierdzania
+        BlockingQueue<Allocation> allocationQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> writeFailure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            ReportWriter report = new ReportWriter(out);
+            try {
+                Allocation allocation;
+                while ((allocation = allocationQueue.take()) != END_OF_ALLOCATIONS) {
+                    //po błędzie zapisu dalej odbieramy z kolejki, żeby nie zablokować optymalizatora
+                    if (writeFailure.get() == null) {
+                        try {
+                            report.append(allocation);
+                        } catch (RuntimeException e) {
+                            writeFailure.set(e);
+                        }
+                    }
+                }
+                if (writeFailure.get() == null) {
+                    report.finish();
+                    out.println();
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                writeFailure.set(e);
+            }
+        }, "pipeline-writer");
+        writer.setDaemon(true);
+        writer.start();
+        optimizer.setAllocationListener(allocation -> put(allocationQueue, allocation));
+
+        //2. generowanie kandydatów dla każdego zamówienia zaraz po sparsowaniu
+        try {
+            Order order;
+            while ((order = orderQueue.take()) != END_OF_ORDERS) {
+                optimizer.addOrder(order);
+            }
+            rethrow(parseFailure.get());
+
+            //sortowanie i zatwierdzanie - wymaga kompletu zamówień
+            List<Allocation> allocations = optimizer.optimize();
+            allocationQueue.put(END_OF_ALLOCATIONS);
+            writer.join();
+            rethrow(writeFailure.get());
+            return allocations;
+        } finally {
+            parser.interrupt();
+            writer.interrupt();
+        }
+    }
+
+    private static <T> void put(BlockingQueue<T> queue, T element) {
+        try {
+            queue.put(element);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Pipeline interrupted");
+        }
+    }
+
+    private static <T> void putQuietly(BlockingQueue<T> queue, T element) {
+        try {
+            queue.put(element);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException e) {
+            throw e;
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        throw new IOException(failure);
+    }
+}
@@ -0,0 +1,72 @@
+package com.company.paymentoptimizer.algo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Porównanie skalarnego i wektorowego skanu limitów kart.
+ * Uruchomienie: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *      "-Dexec.args=-cp %classpath com.company.paymentoptimizer.algo.CapacityScanBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CapacityScanBenchmark {
+
+    //do 1000 metod płatności na wejściu
+    @Param({"16", "128", "1000"})
+    int cards;
+
+    long[] available;
+    int[] out;
+    long amount;
+    final CapacityKernel scalar = new ScalarCapacityKernel();
+    CapacityKernel vector;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        available = new long[cards];
+        for (int i = 0; i < cards; i++) {
+            available[i] = random.nextInt(1_000_000);
+        }
+        out = new int[cards];
+        amount = 900_000;
+        vector = new VectorCapacityKernel();
+    }
+
+    @Benchmark
+    public int scalar() {
+        return scalar.collectCovering(available, cards, amount, out);
+    }
+
+    @Benchmark
+    public int vector() {
+        return vector.collectCovering(available, cards, amount, out);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CapacityScanBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardCapacityIndexTest {
+
+    @Test
+    void shouldMatchCanFullyCoverForBothKernels() {
+        // Given
+        Random random = new Random(7);
+        List<PaymentMethod> cards = new ArrayList<>();
+        for (int i = 0; i < 37; i++) {
+            cards.add(new PaymentMethod("CARD" + i, 5, BigDecimal.valueOf(random.nextInt(100_000), 2)));
+        }
+        CardCapacityIndex scalar = new CardCapacityIndex(cards, new ScalarCapacityKernel());
+        CardCapacityIndex vector = new CardCapacityIndex(cards, CardCapacityIndex.selectKernel());
+        int[] scalarOut = new int[cards.size()];
+        int[] vectorOut = new int[cards.size()];
+
+        for (int round = 0; round < 500; round++) {
+            // kwoty także z 3 miejscami po przecinku (zaokrąglenie w górę do grosza)
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(1_000_000), 3);
+
+            // When
+            int scalarCount = scalar.collectCovering(amount, scalarOut);
+            int vectorCount = vector.collectCovering(amount, vectorOut);
+
+            // Then
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < cards.size(); i++) {
+                if (cards.get(i).canFullyCover(amount)) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected, toList(scalarOut, scalarCount));
+            assertEquals(expected, toList(vectorOut, vectorCount));
+
+            // zużycie limitu jednej karty
+            PaymentMethod used = cards.get(round % cards.size());
+            if (used.canFullyCover(BigDecimal.ONE)) {
+                used.addUsed(BigDecimal.ONE);
+                scalar.refresh(used);
+                vector.refresh(used);
+            }
+        }
+    }
+
+    @Test
+    void shouldSelectKernelMatchingVectorModuleAvailability() {
+        // surefire uruchamia testy z --add-modules jdk.incubator.vector, a wykonanie scalar-kernel bez modułu
+        CapacityKernel kernel = CardCapacityIndex.selectKernel();
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            assertInstanceOf(VectorCapacityKernel.class, kernel);
+        } else {
+            assertInstanceOf(ScalarCapacityKernel.class, kernel);
+        }
+    }
+
+    @Test
+    void shouldFallBackToBigDecimalForFinerScaleLimits() {
+        List<PaymentMethod> cards = List.of(
+                new PaymentMethod("CARD1", 5, new BigDecimal("10.005")),
+                new PaymentMethod("CARD2", 5, new BigDecimal("10.00"))
+        );
+        CardCapacityIndex index = new CardCapacityIndex(cards);
+        int[] out = new int[2];
+
+        assertEquals(1, index.collectCovering(new BigDecimal("10.004"), out));
+        assertEquals(0, out[0]);
+    }
+
+    private static List<Integer> toList(int[] values, int count) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(values[i]);
+        }
+        return list;
+    }
+}
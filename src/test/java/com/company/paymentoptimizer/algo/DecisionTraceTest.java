@@ -0,0 +1,132 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionTraceTest {
+
+    @Test
+    void shouldRecordWinnerAndRunnerUp() {
+        // Given
+        Order order = new Order("order1", new BigDecimal("200.00"), Collections.emptyList());
+        List<PaymentMethod> paymentMethods = Arrays.asList(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("1000.00")),
+                new PaymentMethod("CARD1", 5, new BigDecimal("500.00"))
+        );
+        DecisionTrace trace = new DecisionTrace(64);
+
+        // When
+        Optimizer optimizer = new Optimizer(List.of(order), paymentMethods);
+        optimizer.setDecisionTrace(trace);
+        optimizer.optimize();
+
+        // Then
+        String dump = trace.toString();
+        assertTrue(dump.contains("phase2 WINNER order1 PUNKTY amount=170.00 discount=30.00 available=1000.00"), dump);
+        assertTrue(dump.contains("phase2 RUNNER_UP order1 CARD1 amount=200.00 discount=0 available=500.00"), dump);
+    }
+
+    @Test
+    void shouldRecordRejectedFullCardCandidate() {
+        // Given
+        Order order = new Order("order1", new BigDecimal("300.00"), List.of("CARD1"));
+        List<PaymentMethod> paymentMethods = Arrays.asList(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("1000.00")),
+                new PaymentMethod("CARD1", 5, new BigDecimal("100.00"))
+        );
+        DecisionTrace trace = new DecisionTrace(64);
+
+        // When
+        Optimizer optimizer = new Optimizer(List.of(order), paymentMethods);
+        optimizer.setDecisionTrace(trace);
+        optimizer.optimize();
+
+        // Then
+        assertTrue(trace.toString().contains("phase1 REJECTED order1 CARD1 amount=300.00 discount=0 available=100.00"));
+    }
+
+    @Test
+    void shouldRecordOneRejectedCardsEventPerOrderAndKeepWinner() {
+        // Given - 200 kart za małych na zamówienie, bufor na 8 zdarzeń
+        Order order = new Order("order1", new BigDecimal("200.00"), Collections.emptyList());
+        List<PaymentMethod> paymentMethods = new ArrayList<>();
+        paymentMethods.add(new PaymentMethod("PUNKTY", 15, new BigDecimal("50.00")));
+        for (int i = 0; i < 200; i++) {
+            paymentMethods.add(new PaymentMethod("SMALL" + i, 5, new BigDecimal("10.00")));
+        }
+        paymentMethods.add(new PaymentMethod("BIG", 5, new BigDecimal("500.00")));
+        DecisionTrace trace = new DecisionTrace(8);
+
+        // When
+        Optimizer optimizer = new Optimizer(List.of(order), paymentMethods);
+        optimizer.setDecisionTrace(trace);
+        optimizer.optimize();
+
+        // Then
+        String dump = trace.toString();
+        //REJECTED (punkty), REJECTED_CARDS, WINNER, RUNNER_UP - bez CANDIDATE na każdą opcję
+        assertEquals(4, trace.getWritten(), dump);
+        assertFalse(dump.contains("CANDIDATE"), dump);
+        assertTrue(dump.contains("phase2 REJECTED_CARDS order1 amount=200.00 rejected=200/201 withPoints=200/201"), dump);
+        assertTrue(dump.contains("phase2 WINNER order1 PUNKTY+BIG amount=50.00 discount=20.00 available=50.00 "
+                + "secondaryAvailable=500.00"), dump);
+    }
+
+    @Test
+    void shouldRecordCandidatesOnlyWhenEnabled() {
+        // Given
+        Order order = new Order("order1", new BigDecimal("200.00"), List.of("CARD1"));
+        List<PaymentMethod> paymentMethods = Arrays.asList(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("1000.00")),
+                new PaymentMethod("CARD1", 5, new BigDecimal("500.00"))
+        );
+        DecisionTrace trace = new DecisionTrace(64);
+        trace.setRecordCandidates(true);
+
+        // When
+        Optimizer optimizer = new Optimizer(List.of(order), paymentMethods);
+        optimizer.setDecisionTrace(trace);
+        optimizer.optimize();
+
+        // Then
+        String dump = trace.toString();
+        assertTrue(dump.contains("phase1 CANDIDATE order1 CARD1 amount=190.00 discount=10.00"), dump);
+    }
+
+    @Test
+    void shouldRejectCapacityThatCannotBeRoundedToPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new DecisionTrace(DecisionTrace.MAX_CAPACITY + 1));
+        assertThrows(IllegalArgumentException.class, () -> new DecisionTrace(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> new DecisionTrace(0));
+    }
+
+    @Test
+    void shouldOverwriteOldestEventsWhenFull() {
+        // Given
+        PaymentMethod card = new PaymentMethod("CARD1", 5, new BigDecimal("100.00"));
+        DecisionTrace trace = new DecisionTrace(3);
+
+        // When
+        for (int i = 0; i < 6; i++) {
+            Order order = new Order("order" + i, BigDecimal.TEN, Collections.emptyList());
+            trace.record(DecisionTrace.CANDIDATE, 1, order, card, null, BigDecimal.TEN, BigDecimal.ZERO);
+        }
+
+        // Then
+        assertEquals(4, trace.capacity());
+        assertEquals(4, trace.size());
+        String dump = trace.toString();
+        assertFalse(dump.contains("order1 "));
+        assertTrue(dump.startsWith("2 phase1 CANDIDATE order2"));
+        assertTrue(dump.contains("5 phase1 CANDIDATE order5"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscountTableTest {
+
+    private final PaymentMethod points = new PaymentMethod("PUNKTY", 15, new BigDecimal("100.00"));
+    private final List<PaymentMethod> cards = List.of(
+            new PaymentMethod("CARD1", 10, new BigDecimal("100.00")),
+            new PaymentMethod("CARD2", 5, new BigDecimal("100.00")),
+            new PaymentMethod("CARD3", 20, new BigDecimal("100.00"))
+    );
+
+    @Test
+    void shouldResolvePromotionsToSortedUniqueCardIndexes() {
+        // Given - nieznane id, PUNKTY, powtórzenia i odwrotna kolejność
+        DiscountTable table = new DiscountTable(DiscountRules.STANDARD, points, cards);
+        Order order = new Order("order1", new BigDecimal("123.45"),
+                List.of("CARD3", "UNKNOWN", "PUNKTY", "CARD1", "CARD3"));
+
+        // When
+        table.extendTo(List.of(order));
+
+        // Then
+        assertEquals(2, table.promoCardCount(0));
+        assertEquals(0, table.promoCard(0, 0));
+        assertEquals(2, table.promoCard(0, 1));
+        assertEquals(new BigDecimal("12.35"), table.promoDiscount(0, 0));
+        assertEquals(new BigDecimal("24.69"), table.promoDiscountForCard(0, 2));
+        assertEquals(new BigDecimal("18.52"), table.pointsDiscount(0));
+        assertEquals(new BigDecimal("12.35"), table.minPointsAmount(0));
+        assertEquals(new BigDecimal("12.35"), table.partialPointsDiscount(0));
+    }
+
+    @Test
+    void shouldExtendOnlyWithNewOrders() {
+        DiscountTable table = new DiscountTable(DiscountRules.STANDARD, points, cards);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            orders.add(new Order("order" + i, BigDecimal.valueOf(i), List.of()));
+            table.extendTo(orders);
+        }
+
+        assertEquals(40, table.size());
+        assertEquals(new BigDecimal("3.90"), table.minPointsAmount(39));
+        assertEquals(0, table.promoCardCount(39));
+    }
+
+    @Test
+    void shouldComputeSameRowsFromOrderTableColumns() {
+        // Given - zaokrąglenia w górę i w dół, zero, wartość bez groszy
+        List<Order> orders = List.of(
+                new Order("order1", new BigDecimal("123.45"), List.of("CARD3", "CARD1")),
+                new Order("order2", new BigDecimal("0.10"), List.of("CARD2")),
+                new Order("order3", BigDecimal.ZERO, List.of()),
+                new Order("order4", new BigDecimal("99"), List.of("CARD2", "UNKNOWN", "CARD2")));
+        OrderTable.Builder builder = new OrderTable.Builder();
+        orders.forEach(order -> builder.add(order.getId(), order.getValue(), order.getPromotions()));
+        DiscountRules rules = new DiscountRules(20, 7);
+        DiscountTable fromList = new DiscountTable(rules, points, cards);
+        DiscountTable fromColumns = new DiscountTable(rules, points, cards);
+
+        // When
+        fromList.extendTo(orders);
+        fromColumns.extendTo(builder.build());
+
+        // Then
+        for (int i = 0; i < orders.size(); i++) {
+            assertEquals(fromList.promoCardCount(i), fromColumns.promoCardCount(i));
+            for (int position = 0; position < fromList.promoCardCount(i); position++) {
+                assertEquals(fromList.promoCard(i, position), fromColumns.promoCard(i, position));
+                assertEquals(fromList.promoDiscount(i, position), fromColumns.promoDiscount(i, position));
+            }
+            assertEquals(fromList.pointsDiscount(i), fromColumns.pointsDiscount(i));
+            assertEquals(fromList.minPointsAmount(i), fromColumns.minPointsAmount(i));
+            assertEquals(fromList.partialPointsDiscount(i), fromColumns.partialPointsDiscount(i));
+        }
+        assertEquals(new BigDecimal("0.01"), fromColumns.promoDiscount(1, 0));
+    }
+
+    @Test
+    void shouldApplyCustomPartialPointsRule() {
+        // Given - 20% punktami daje 5% rabatu; punktów starczy tylko na część zamówienia
+        List<Order> orders = List.of(new Order("order1", new BigDecimal("100.00"), List.of()));
+        List<PaymentMethod> methods = List.of(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("25.00")),
+                new PaymentMethod("CARD1", 0, new BigDecimal("500.00"))
+        );
+
+        // When
+        List<Allocation> allocations = new Optimizer(orders, methods, new DiscountRules(20, 5)).optimize();
+
+        // Then
+        Allocation allocation = allocations.getFirst();
+        assertEquals(new BigDecimal("5.00"), allocation.getDiscountValue());
+        assertEquals(new BigDecimal("25.00"), allocation.getAmountFromPrimaryMethod());
+        assertEquals(new BigDecimal("70.00"), allocation.getSecondaryPayment().orElseThrow().amount());
+    }
+}
@@ -0,0 +1,144 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Skalowanie optymalizatora na rosnących danych (1k - 1M zamówień, stałe ziarno).
+ * Wyłączone ze zwykłego mvn test - uruchomienie: mvn test -Pperformance
+ */
+@Tag("performance")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OptimizerScalingTest {
+
+    private static final long SEED = 2025;
+    private static final int[] SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int CARDS = 20;
+
+    //czas na zamówienie przy 10x większym wejściu: n log n to ok. 1.3x, pętla kwadratowa to 10x
+    private static final double MAX_PER_ORDER_TIME_GROWTH = 3.0;
+    //poniżej tego rozmiaru pomiar czasu to głównie szum (JIT, GC)
+    private static final int MIN_TIMED_SIZE = 10_000;
+    private static final long MAX_ALLOCATED_BYTES_PER_ORDER = 2_000;
+
+    //łączny rabat zapisany dla danych z ziarnem SEED - nowa wersja nie może dać mniej
+    private static final Map<Integer, BigDecimal> BASELINE_DISCOUNT = Map.of(
+            1_000, new BigDecimal("31668.45"),
+            10_000, new BigDecimal("317711.40"),
+            100_000, new BigDecimal("3190156.25"),
+            1_000_000, new BigDecimal("31866485.20"));
+
+    private final Map<Integer, Run> runs = new LinkedHashMap<>();
+
+    private record Run(long nanos, long allocatedBytes, BigDecimal totalDiscount) {
+        double nanosPerOrder(int size) {
+            return (double) nanos / size;
+        }
+    }
+
+    @BeforeAll
+    void measure() {
+        //rozgrzewka JIT
+        for (int i = 0; i < 3; i++) {
+            run(orders(MIN_TIMED_SIZE));
+        }
+        for (int size : SIZES) {
+            List<Order> orders = orders(size);
+            //najlepszy z kilku przebiegów - mniejszy wpływ GC i innych procesów
+            Run best = null;
+            for (int attempt = 0; attempt < (size < 1_000_000 ? 3 : 2); attempt++) {
+                Run run = run(orders);
+                if (best == null || run.nanos() < best.nanos()) {
+                    best = run;
+                }
+            }
+            runs.put(size, best);
+            System.err.printf("optimize %,d orders: %d ms, %d B/order, discount %s%n",
+                    size, best.nanos() / 1_000_000, best.allocatedBytes() / size, best.totalDiscount());
+        }
+    }
+
+    @Test
+    void shouldScaleNearLinearlyWithOrderCount() {
+        for (int i = 1; i < SIZES.length; i++) {
+            if (SIZES[i - 1] < MIN_TIMED_SIZE) {
+                continue;
+            }
+            double growth = runs.get(SIZES[i]).nanosPerOrder(SIZES[i]) / runs.get(SIZES[i - 1]).nanosPerOrder(SIZES[i - 1]);
+            assertTrue(growth <= MAX_PER_ORDER_TIME_GROWTH, String.format(
+                    "time per order grew %.2fx from %d to %d orders", growth, SIZES[i - 1], SIZES[i]));
+        }
+    }
+
+    @Test
+    void shouldStayWithinAllocationBudgetPerOrder() {
+        for (int size : SIZES) {
+            long bytesPerOrder = runs.get(size).allocatedBytes() / size;
+            assertTrue(bytesPerOrder <= MAX_ALLOCATED_BYTES_PER_ORDER,
+                    size + " orders allocated " + bytesPerOrder + " B/order");
+        }
+    }
+
+    @Test
+    void shouldNotFallBelowRecordedDiscount() {
+        for (int size : SIZES) {
+            BigDecimal discount = runs.get(size).totalDiscount();
+            assertTrue(discount.compareTo(BASELINE_DISCOUNT.get(size)) >= 0,
+                    size + " orders: discount " + discount + " below baseline " + BASELINE_DISCOUNT.get(size));
+        }
+    }
+
+    private static Run run(List<Order> orders) {
+        List<PaymentMethod> methods = methods(orders.size());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        List<Allocation> allocations = new Optimizer(orders, methods).optimize();
+
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        assertEquals(orders.size(), allocations.size(), "all orders should be paid");
+        return new Run(nanos, allocated, ScenarioEngine.totalDiscount(allocations));
+    }
+
+    // powtarzalne dane: kwoty z remisami, 0-3 promocje kart na zamówienie
+    private static List<Order> orders(int count) {
+        Random random = new Random(SEED);
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int promotionCount = random.nextInt(4);
+            List<String> promotions = new ArrayList<>(promotionCount);
+            for (int p = 0; p < promotionCount; p++) {
+                promotions.add("CARD" + random.nextInt(CARDS));
+            }
+            orders.add(new Order("ORDER" + i, BigDecimal.valueOf(100 + random.nextInt(500) * 100L, 2), promotions));
+        }
+        return orders;
+    }
+
+    // limity rosną razem z liczbą zamówień - ten sam "kształt" zadania dla każdego rozmiaru
+    private static List<PaymentMethod> methods(int orderCount) {
+        List<PaymentMethod> methods = new ArrayList<>();
+        methods.add(new PaymentMethod("PUNKTY", 15, BigDecimal.valueOf(orderCount * 20L)));
+        for (int c = 0; c < CARDS; c++) {
+            methods.add(new PaymentMethod("CARD" + c, 5 + c % 4 * 5, BigDecimal.valueOf(orderCount * 15L)));
+        }
+        return methods;
+    }
+}
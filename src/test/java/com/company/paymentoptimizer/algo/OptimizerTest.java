@@ -3,15 +3,19 @@ package com.company.paymentoptimizer.algo;
 import com.company.paymentoptimizer.io.InputReader;
 import com.company.paymentoptimizer.model.Allocation;
 import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
 import com.company.paymentoptimizer.model.PaymentMethod;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
@@ -228,6 +232,67 @@ class OptimizerTest {
         assertEquals(expected, actualAllocations);
     }
 
+    @Test
+    void shouldGiveSameAllocationsForColumnarOrderTable() throws URISyntaxException, IOException {
+        // Given
+        String ordersPath = Paths.get(getClass().getClassLoader().getResource("orders.json").toURI()).toString();
+        String methodsPath = Paths.get(getClass().getClassLoader().getResource("paymentmethods.json").toURI()).toString();
+
+        // When - osobne metody płatności dla każdego przebiegu (optymalizator zmienia ich wykorzystanie)
+        List<Allocation> fromList = new Optimizer(inputReader.readOrders(ordersPath),
+                inputReader.readPaymentMethods(methodsPath)).optimize();
+        List<Allocation> fromTable = new Optimizer(inputReader.readOrderTable(ordersPath),
+                inputReader.readPaymentMethods(methodsPath)).optimize();
+
+        // Then
+        assertEquals(fromList, fromTable);
+    }
+
+    @Test
+    void shouldPrintSameReportForColumnarOrderTable(@TempDir Path dir) throws IOException {
+        // Given - wartości z różną liczbą miejsc po przecinku
+        Path ordersFile = dir.resolve("orders.json");
+        Files.writeString(ordersFile, """
+                [
+                  {"id": "ORDER1", "value": "293.0", "promotions": ["CARD2"]},
+                  {"id": "ORDER2", "value": 50, "promotions": ["CARD1"]},
+                  {"id": "ORDER3", "value": "12.5"},
+                  {"id": "ORDER4", "value": "80.00"}
+                ]
+                """);
+        Path methodsFile = dir.resolve("paymentmethods.json");
+        Files.writeString(methodsFile, """
+                [
+                  {"id": "PUNKTY", "discount": "15", "limit": "20.0"},
+                  {"id": "CARD1", "discount": "5", "limit": "500"},
+                  {"id": "CARD2", "discount": "10", "limit": "300.0"}
+                ]
+                """);
+
+        // When
+        Optimizer fromList = new Optimizer(inputReader.readOrders(ordersFile.toString()),
+                inputReader.readPaymentMethods(methodsFile.toString()));
+        String listReport = fromList.generateReport(fromList.optimize());
+        Optimizer fromTable = new Optimizer(inputReader.readOrderTable(ordersFile.toString()),
+                inputReader.readPaymentMethods(methodsFile.toString()));
+        String tableReport = fromTable.generateReport(fromTable.optimize());
+
+        // Then
+        assertTrue(listReport.contains("amount: 293.0)"), listReport);
+        assertEquals(listReport, tableReport);
+    }
+
+    @Test
+    void shouldRejectAddingOrdersToColumnarOptimizer() {
+        OrderTable table = new OrderTable.Builder()
+                .add("order1", new BigDecimal("10.00"), List.of("CARD1"))
+                .build();
+        Optimizer optimizer = new Optimizer(table, Arrays.asList(pointsMethod, bankCard1));
+
+        assertThrows(IllegalStateException.class,
+                () -> optimizer.addOrder(new Order("order2", BigDecimal.ONE, List.of())));
+    }
+
     // pomocnicze metody
     private Order findOrderById(List<Order> orders, String id) {
         return orders.stream().filter(o -> o.getId().equals(id)).findFirst()
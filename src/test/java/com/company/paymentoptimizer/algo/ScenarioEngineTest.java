@@ -0,0 +1,175 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.algo.ScenarioEngine.Scenario;
+import com.company.paymentoptimizer.algo.ScenarioEngine.ScenarioResult;
+import com.company.paymentoptimizer.io.AllocationCodec;
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioEngineTest {
+
+    @Test
+    void shouldMatchStandaloneOptimizerForEveryScenario() {
+        // Given
+        Random random = new Random(11);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            List<String> promotions = new ArrayList<>();
+            for (int c = 1; c <= 3; c++) {
+                if (random.nextBoolean()) {
+                    promotions.add("CARD" + c);
+                }
+            }
+            // mało różnych wartości - dużo remisów
+            orders.add(new Order("order" + i, BigDecimal.valueOf(10 + random.nextInt(20) * 5), promotions));
+        }
+        List<PaymentMethod> methods = methods("900.00", "700.00", "1200.00", "500.00");
+        ScenarioEngine engine = new ScenarioEngine(orders, methods, 4);
+
+        List<Scenario> scenarios = List.of(
+                Scenario.of("base"),
+                Scenario.of("more CARD1").withLimit("CARD1", new BigDecimal("1500.00")),
+                Scenario.of("less points").withLimit("PUNKTY", new BigDecimal("100.00")),
+                Scenario.of("CARD2 discount").withDiscount("CARD2", 15),
+                Scenario.of("points discount").withDiscount("PUNKTY", 20)
+        );
+
+        // When
+        List<ScenarioResult> results = engine.evaluate(scenarios);
+
+        // Then
+        assertEquals(scenarios.size(), results.size());
+        for (ScenarioResult result : results) {
+            List<PaymentMethod> standaloneMethods = applied(methods, result.scenario());
+            List<Allocation> expected = new Optimizer(orders, standaloneMethods).optimize();
+            assertEquals(encode(expected), encode(result.allocations()), result.scenario().name());
+            assertEquals(0, ScenarioEngine.totalDiscount(expected).compareTo(result.totalDiscount()));
+        }
+        // bazowe metody płatności nietknięte
+        for (PaymentMethod method : methods) {
+            assertEquals(0, method.getUsed().signum());
+        }
+    }
+
+    @Test
+    void shouldMatchStandaloneOptimizerWhenLimitsBindInBothPhases() {
+        // Given - ciasne limity: karty wyczerpują się w fazie 1, punkty w fazie 2
+        Random random = new Random(5);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            List<String> promotions = new ArrayList<>();
+            for (int c = 1; c <= 3; c++) {
+                if (random.nextInt(3) == 0) {
+                    promotions.add("CARD" + c);
+                }
+            }
+            orders.add(new Order("order" + i, BigDecimal.valueOf(1000 + random.nextInt(40) * 250L, 2), promotions));
+        }
+        List<PaymentMethod> methods = methods("2500.00", "1800.00", "3000.00", "1500.00");
+        ScenarioEngine engine = new ScenarioEngine(orders, methods, 2);
+
+        List<Scenario> scenarios = new ArrayList<>();
+        for (PaymentMethod method : methods) {
+            for (String delta : List.of("-900.00", "-25.50", "12.34", "300.00", "5000.00")) {
+                scenarios.add(Scenario.of(method.getId() + " " + delta)
+                        .withLimit(method.getId(), method.getLimit().add(new BigDecimal(delta))));
+            }
+        }
+        scenarios.add(Scenario.of("points discount and CARD3 limit")
+                .withDiscount("PUNKTY", 5)
+                .withLimit("CARD3", new BigDecimal("2000.00")));
+
+        // When
+        List<ScenarioResult> results = engine.evaluate(scenarios);
+
+        // Then
+        for (ScenarioResult result : results) {
+            List<Allocation> expected = new Optimizer(orders, applied(methods, result.scenario())).optimize();
+            assertEquals(encode(expected), encode(result.allocations()), result.scenario().name());
+        }
+    }
+
+    @Test
+    void shouldRecomputeWhenCardCoversOnlyTheRestAfterPoints() {
+        // Given - punkty wystarczą na część zamówienia, CARD1 po zmianie pokrywa resztę (70), ale nie całość
+        List<Order> orders = List.of(new Order("order1", new BigDecimal("100.00"), List.of()));
+        List<PaymentMethod> methods = List.of(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("20.00")),
+                new PaymentMethod("CARD1", 0, new BigDecimal("60.00")),
+                new PaymentMethod("CARD2", 0, new BigDecimal("200.00"))
+        );
+        ScenarioEngine engine = new ScenarioEngine(orders, methods, 1);
+        Scenario scenario = Scenario.of("more CARD1").withLimit("CARD1", new BigDecimal("80.00"));
+
+        // When
+        ScenarioResult result = engine.evaluate(scenario);
+
+        // Then
+        List<Allocation> expected = new Optimizer(orders, applied(methods, scenario)).optimize();
+        assertEquals(encode(expected), encode(result.allocations()));
+    }
+
+    @Test
+    void shouldComputeMarginalValueOfExtraLimit() {
+        // Given - CARD1 pokrywa tylko jedno z dwóch zamówień z promocją
+        List<Order> orders = List.of(
+                new Order("order1", new BigDecimal("100.00"), List.of("CARD1")),
+                new Order("order2", new BigDecimal("100.00"), List.of("CARD1"))
+        );
+        List<PaymentMethod> methods = List.of(
+                new PaymentMethod("PUNKTY", 0, new BigDecimal("0.00")),
+                new PaymentMethod("CARD1", 10, new BigDecimal("90.00")),
+                new PaymentMethod("CARD2", 0, new BigDecimal("500.00"))
+        );
+        ScenarioEngine engine = new ScenarioEngine(orders, methods, 2);
+
+        // When
+        Map<String, BigDecimal> marginal = engine.marginalValues(new BigDecimal("90.00"));
+
+        // Then - dodatkowe 90 na CARD1 daje rabat 10 na drugim zamówieniu
+        assertEquals(List.of("PUNKTY", "CARD1", "CARD2"), List.copyOf(marginal.keySet()));
+        assertEquals(new BigDecimal("0.1111"), marginal.get("CARD1"));
+        assertEquals(0, marginal.get("CARD2").signum());
+    }
+
+    @Test
+    void shouldRejectUnknownMethod() {
+        ScenarioEngine engine = new ScenarioEngine(List.of(), methods("1", "1", "1", "1"), 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.evaluate(Scenario.of("bad").withLimit("CARD9", BigDecimal.TEN)));
+    }
+
+    private static List<PaymentMethod> methods(String card1, String card2, String card3, String points) {
+        return List.of(
+                new PaymentMethod("CARD1", 10, new BigDecimal(card1)),
+                new PaymentMethod("PUNKTY", 15, new BigDecimal(points)),
+                new PaymentMethod("CARD2", 5, new BigDecimal(card2)),
+                new PaymentMethod("CARD3", 10, new BigDecimal(card3))
+        );
+    }
+
+    private static List<PaymentMethod> applied(List<PaymentMethod> methods, Scenario scenario) {
+        List<PaymentMethod> copies = new ArrayList<>();
+        for (PaymentMethod method : methods) {
+            copies.add(new PaymentMethod(method.getId(),
+                    scenario.discounts().getOrDefault(method.getId(), method.getDiscount()),
+                    scenario.limits().getOrDefault(method.getId(), method.getLimit())));
+        }
+        return copies;
+    }
+
+    private static List<String> encode(List<Allocation> allocations) {
+        return allocations.stream().map(AllocationCodec::encode).toList();
+    }
+}
@@ -0,0 +1,113 @@
+package com.company.paymentoptimizer.algo;
+
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import com.company.paymentoptimizer.model.PaymentOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingCandidateBufferTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldGiveSameAllocationsAsInMemorySort() throws IOException {
+        // Given - jeden kandydat w pamięci wymusza setki runów i scalanie wielopoziomowe
+        List<Allocation> expected = new Optimizer(orders(), methods()).optimize();
+
+        // When
+        Optimizer optimizer = new Optimizer(orders(), methods());
+        optimizer.setCandidateMemoryBudget(SpillingCandidateBuffer.ESTIMATED_CANDIDATE_BYTES, tempDir);
+        List<Allocation> actual = optimizer.optimize();
+
+        // Then
+        assertEquals(expected, actual);
+        try (Stream<Path> leftovers = Files.list(tempDir)) {
+            assertEquals(0, leftovers.count(), "temporary runs should be removed");
+        }
+    }
+
+    @Test
+    void shouldKeepCandidatesInMemoryWithinBudget() {
+        List<Order> orders = orders();
+        PaymentMethod card = new PaymentMethod("CARD1", 5, new BigDecimal("100.00"));
+        SpillingCandidateBuffer buffer = new SpillingCandidateBuffer(
+                10L * SpillingCandidateBuffer.ESTIMATED_CANDIDATE_BYTES, tempDir, (orderIndex, cardIndex) -> null);
+
+        for (int i = 0; i < 25; i++) {
+            buffer.add(new PaymentOption(orders.get(i), card,
+                    orders.get(i).getValue(), Optional.empty(), BigDecimal.ZERO, BigDecimal.ONE), i, 0);
+        }
+
+        assertEquals(25, buffer.size());
+        assertEquals(2, buffer.getRunCount());
+    }
+
+    @Test
+    void shouldSpillIntoOneDirectoryRemovedOnClose() throws IOException {
+        List<Order> orders = orders();
+        PaymentMethod card = new PaymentMethod("CARD1", 5, new BigDecimal("100.00"));
+        SpillingCandidateBuffer buffer = new SpillingCandidateBuffer(
+                SpillingCandidateBuffer.ESTIMATED_CANDIDATE_BYTES, tempDir, (orderIndex, cardIndex) -> null);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(new PaymentOption(orders.get(i), card,
+                    orders.get(i).getValue(), Optional.empty(), BigDecimal.ZERO, BigDecimal.ONE), i, 0);
+        }
+
+        // wszystkie runy w jednym katalogu bufora
+        try (Stream<Path> entries = Files.list(tempDir)) {
+            List<Path> dirs = entries.toList();
+            assertEquals(1, dirs.size());
+            assertTrue(Files.isDirectory(dirs.getFirst()));
+            try (Stream<Path> runs = Files.list(dirs.getFirst())) {
+                assertEquals(5, runs.count());
+            }
+        }
+
+        buffer.close();
+        try (Stream<Path> leftovers = Files.list(tempDir)) {
+            assertEquals(0, leftovers.count());
+        }
+    }
+
+    // powtarzalne dane: dużo remisów (te same kwoty i rabaty), żeby sprawdzić stabilność kolejności
+    private static List<Order> orders() {
+        Random random = new Random(42);
+        List<Order> orders = new ArrayList<>();
+        String[] cards = {"CARD1", "CARD2", "CARD3"};
+        for (int i = 0; i < 300; i++) {
+            List<String> promotions = new ArrayList<>();
+            for (String card : cards) {
+                if (random.nextBoolean()) {
+                    promotions.add(card);
+                }
+            }
+            BigDecimal value = BigDecimal.valueOf(10 + random.nextInt(20) * 5L).setScale(2);
+            orders.add(new Order("ORDER" + i, value, promotions));
+        }
+        return orders;
+    }
+
+    private static List<PaymentMethod> methods() {
+        return List.of(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("500.00")),
+                new PaymentMethod("CARD1", 10, new BigDecimal("2000.00")),
+                new PaymentMethod("CARD2", 10, new BigDecimal("1500.00")),
+                new PaymentMethod("CARD3", 5, new BigDecimal("3000.00"))
+        );
+    }
+}
@@ -0,0 +1,69 @@
+package com.company.paymentoptimizer.algo;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValueSortTest {
+
+    @Test
+    void shouldMatchStableComparatorSortIncludingTiesAndNegativeKeys() {
+        // Given - dużo remisów, zera, wartości ujemne i skrajne
+        Random random = new Random(7);
+        long[] keys = new long[5000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = switch (random.nextInt(5)) {
+                case 0 -> random.nextInt(20);
+                case 1 -> -random.nextInt(1000);
+                case 2 -> random.nextLong();
+                case 3 -> i % 2 == 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+                default -> random.nextInt(10_000_000);
+            };
+        }
+
+        // When
+        int[] byValue = ValueSort.descending(keys);
+
+        // Then
+        assertArrayEquals(comparatorSort(keys), byValue);
+    }
+
+    @Test
+    void shouldHandleEmptyAndSingleElementInput() {
+        assertArrayEquals(new int[0], ValueSort.descending(new long[0]));
+        assertArrayEquals(new int[]{0}, ValueSort.descending(new long[]{42}));
+    }
+
+    @Test
+    void shouldBuildKeysOnCommonScale() {
+        BigDecimal[] values = {new BigDecimal("1.5"), new BigDecimal("2.125"), new BigDecimal("3"), new BigDecimal("1E+2")};
+
+        long[] keys = ValueSort.fixedPointKeys(values.length, i -> values[i]);
+
+        assertArrayEquals(new long[]{1500, 2125, 3000, 100_000}, keys);
+    }
+
+    @Test
+    void shouldFallBackWhenValueDoesNotFitInLong() {
+        BigDecimal[] tooFine = {BigDecimal.ONE, new BigDecimal("0.0000000001")};
+        BigDecimal[] tooLarge = {BigDecimal.ONE, new BigDecimal("1E+30")};
+        BigDecimal[] missing = {BigDecimal.ONE, null};
+
+        assertNull(ValueSort.fixedPointKeys(tooFine.length, i -> tooFine[i]));
+        assertNull(ValueSort.fixedPointKeys(tooLarge.length, i -> tooLarge[i]));
+        assertNull(ValueSort.fixedPointKeys(missing.length, i -> missing[i]));
+    }
+
+    private static int[] comparatorSort(long[] keys) {
+        Integer[] permutation = new Integer[keys.length];
+        for (int i = 0; i < permutation.length; i++) {
+            permutation[i] = i;
+        }
+        Arrays.sort(permutation, (a, b) -> Long.compare(keys[b], keys[a]));
+        return Arrays.stream(permutation).mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,236 @@
+package com.company.paymentoptimizer.dist;
+
+import com.company.paymentoptimizer.App;
+import com.company.paymentoptimizer.algo.Optimizer;
+import com.company.paymentoptimizer.io.AllocationCodec;
+import com.company.paymentoptimizer.io.InputReader;
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardCoordinatorTest {
+
+    @Test
+    void shouldMatchSingleOptimizerWithOneWorker() throws Exception {
+        // Given
+        List<Order> orders = randomOrders(300, 3);
+
+        // When
+        List<Allocation> distributed = new ShardCoordinator(1).run(orders, methods());
+        List<Allocation> expected = new Optimizer(orders, methods()).optimize();
+
+        // Then
+        assertEquals(encode(expected), encode(distributed));
+    }
+
+    @Test
+    void shouldPayFixturesLikeSingleOptimizerWithTwoWorkers() throws Exception {
+        // Given - po podziale limitów żaden shard nie pokryje ORDER2 (200) swoją częścią BosBankrut
+        InputReader reader = new InputReader();
+        List<Order> orders = reader.readOrders(resourcePath("orders.json"));
+
+        // When
+        List<Allocation> distributed = new ShardCoordinator(2).run(orders, reader.readPaymentMethods(resourcePath("paymentmethods.json")));
+        List<Allocation> single = new Optimizer(orders, reader.readPaymentMethods(resourcePath("paymentmethods.json"))).optimize();
+
+        // Then - każde zamówienie opłacone jak w jednym procesie; ORDER2 opłaca dopiero reconciliation
+        // (rabat może być niższy niż w jednym procesie - zachłanny wybór działa w ramach shardu)
+        assertEquals(paidOrders(single), paidOrders(distributed));
+        assertTrue(totalDiscount(distributed).signum() > 0);
+    }
+
+    @Test
+    void shouldRunOverColumnarOrders() throws Exception {
+        // Given - asOrders() tworzy nowy obiekt Order przy każdym get()
+        List<Order> orders = randomOrders(400, 11);
+        OrderTable.Builder builder = new OrderTable.Builder();
+        for (Order order : orders) {
+            builder.add(order.getId(), order.getValue(), order.getPromotions());
+        }
+        List<Order> columnar = builder.build().asOrders();
+
+        // When
+        List<Allocation> fromList = new ShardCoordinator(2).run(orders, methods());
+        List<Allocation> fromTable = new ShardCoordinator(2).run(columnar, methods());
+
+        // Then
+        assertEquals(encode(fromList), encode(fromTable));
+    }
+
+    @Test
+    void shouldPrintSameOutputForColumnarInput() throws Exception {
+        // Given
+        String orders = resourcePath("orders.json");
+        String methods = resourcePath("paymentmethods.json");
+
+        // When
+        String fromList = runApp(orders, methods, "--workers", "2");
+        String fromTable = runApp(orders, methods, "--columnar", "--workers", "2");
+
+        // Then
+        assertFalse(fromList.isBlank());
+        assertEquals(fromList, fromTable);
+    }
+
+    @Test
+    void shouldNotReportOrdersPaidByReconciliation() throws Exception {
+        // Given - shard nie pokryje zamówienia swoją częścią limitu, pokrywa je dopiero reconciliation
+        List<Order> orders = List.of(
+                new Order("order1", new BigDecimal("100.00"), List.of()),
+                new Order("order2", new BigDecimal("100.00"), List.of()),
+                new Order("order3", new BigDecimal("500.00"), List.of())
+        );
+        List<PaymentMethod> methods = List.of(
+                new PaymentMethod("PUNKTY", 10, new BigDecimal("0.00")),
+                new PaymentMethod("CARD1", 0, new BigDecimal("200.00"))
+        );
+        List<String> reported = new ArrayList<>();
+        ShardCoordinator coordinator = new ShardCoordinator(2);
+        coordinator.setUnallocatedOrderListener(order -> reported.add(order.getId()));
+
+        // When
+        List<Allocation> allocations = coordinator.run(orders, methods);
+
+        // Then
+        assertEquals(Set.of("order1", "order2"), paidOrders(allocations));
+        assertEquals(List.of("order3"), reported);
+    }
+
+    @Test
+    void shouldRespectGlobalLimitsAcrossWorkers() throws Exception {
+        // Given
+        List<Order> orders = randomOrders(500, 5);
+        List<PaymentMethod> methods = methods();
+
+        // When
+        List<Allocation> allocations = new ShardCoordinator(3).run(orders, methods);
+
+        // Then - każde zamówienie co najwyżej raz, żaden limit nie przekroczony
+        Set<String> allocated = new HashSet<>();
+        Map<String, BigDecimal> usage = new HashMap<>();
+        for (Allocation allocation : allocations) {
+            assertTrue(allocated.add(allocation.getOrder().getId()));
+            usage.merge(allocation.getPrimaryMethod().getId(), allocation.getAmountFromPrimaryMethod(), BigDecimal::add);
+            allocation.getSecondaryPayment().ifPresent(secondary ->
+                    usage.merge(secondary.paymentMethod().getId(), secondary.amount(), BigDecimal::add));
+        }
+        for (PaymentMethod method : methods) {
+            BigDecimal used = usage.getOrDefault(method.getId(), BigDecimal.ZERO);
+            assertTrue(used.compareTo(method.getLimit()) <= 0, method.getId());
+            assertEquals(0, used.compareTo(method.getUsed()), method.getId());
+        }
+    }
+
+    @Test
+    void shouldReconcileOrdersThatDidNotFitIntoShardLimits() throws Exception {
+        // Given - po podziale limitów żadna karta w shardzie nie pokryje zamówienia
+        List<Order> orders = List.of(
+                new Order("order1", new BigDecimal("100.00"), List.of()),
+                new Order("order2", new BigDecimal("100.00"), List.of())
+        );
+        List<PaymentMethod> methods = List.of(
+                new PaymentMethod("PUNKTY", 10, new BigDecimal("0.00")),
+                new PaymentMethod("CARD1", 0, new BigDecimal("100.00")),
+                new PaymentMethod("CARD2", 0, new BigDecimal("100.00"))
+        );
+
+        // When
+        List<Allocation> allocations = new ShardCoordinator(2).run(orders, methods);
+
+        // Then
+        assertEquals(Set.of("order1", "order2"),
+                Set.copyOf(allocations.stream().map(allocation -> allocation.getOrder().getId()).toList()));
+        assertEquals(0, methods.get(1).getAvailable().signum());
+        assertEquals(0, methods.get(2).getAvailable().signum());
+    }
+
+    @Test
+    void shouldDivideLimitsWithoutLosingCents() {
+        // Given
+        List<Order> orders = randomOrders(50, 7);
+        List<PaymentMethod> methods = List.of(new PaymentMethod("CARD1", 5, new BigDecimal("1000.01")));
+
+        // When
+        List<ShardPlanner.Shard> shards = new ShardPlanner().plan(orders, methods, 3);
+
+        // Then
+        BigDecimal total = BigDecimal.ZERO;
+        int orderCount = 0;
+        for (ShardPlanner.Shard shard : shards) {
+            total = total.add(shard.paymentMethods().getFirst().getLimit());
+            orderCount += shard.orders().size();
+        }
+        assertEquals(new BigDecimal("1000.01"), total);
+        assertEquals(orders.size(), orderCount);
+    }
+
+    private static List<PaymentMethod> methods() {
+        return List.of(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("800.00")),
+                new PaymentMethod("CARD1", 10, new BigDecimal("2000.00")),
+                new PaymentMethod("CARD2", 5, new BigDecimal("3000.00")),
+                new PaymentMethod("CARD3", 20, new BigDecimal("500.00"))
+        );
+    }
+
+    private static List<Order> randomOrders(int count, long seed) {
+        Random random = new Random(seed);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<String> promotions = new ArrayList<>();
+            for (int c = 1; c <= 3; c++) {
+                if (random.nextInt(3) == 0) {
+                    promotions.add("CARD" + c);
+                }
+            }
+            orders.add(new Order("order" + i, BigDecimal.valueOf(1000 + random.nextInt(5000), 2), promotions));
+        }
+        return orders;
+    }
+
+    private static Set<String> paidOrders(List<Allocation> allocations) {
+        return Set.copyOf(allocations.stream().map(allocation -> allocation.getOrder().getId()).toList());
+    }
+
+    private static BigDecimal totalDiscount(List<Allocation> allocations) {
+        return allocations.stream().map(Allocation::getDiscountValue).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private String resourcePath(String name) throws URISyntaxException {
+        return Paths.get(getClass().getClassLoader().getResource(name).toURI()).toString();
+    }
+
+    private static String runApp(String... args) {
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            App.main(args);
+        } finally {
+            System.setOut(originalOut);
+        }
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> encode(List<Allocation> allocations) {
+        return allocations.stream().map(AllocationCodec::encode).toList();
+    }
+}
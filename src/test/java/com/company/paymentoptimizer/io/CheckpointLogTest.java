@@ -0,0 +1,178 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.algo.Optimizer;
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldResumeWithSameResultAsUninterruptedRun() throws IOException {
+        // Given - pełny przebieg z punktem kontrolnym po każdej pozycji
+        Path file = tempDir.resolve("run.ckpt");
+        List<Order> orders = orders();
+        List<PaymentMethod> methods = methods();
+        Optimizer optimizer = new Optimizer(orders, methods);
+        try (CheckpointLog log = CheckpointLog.create(file)) {
+            optimizer.enableCheckpoints(log, 1);
+            optimizer.optimize();
+        }
+        List<String> expected = encode(new Optimizer(orders(), methods()).optimize());
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int cut = 1; cut < lines.size(); cut++) {
+            // "awaria" w połowie zapisu kolejnej linii
+            List<String> prefix = lines.subList(0, cut);
+            String partial = lines.get(cut).substring(0, lines.get(cut).length() / 2);
+            Files.writeString(file, String.join("\n", prefix) + "\n" + partial, StandardCharsets.UTF_8);
+
+            // When
+            List<Order> resumedOrders = orders();
+            List<PaymentMethod> resumedMethods = methods();
+            Optimizer resumed = new Optimizer(resumedOrders, resumedMethods);
+            List<Allocation> result;
+            CheckpointLog.Resumed state = CheckpointLog.resume(file, resumedOrders, resumedMethods,
+                    resumed.inputHash());
+            try (CheckpointLog log = state.log()) {
+                if (state.checkpoint() != null) {
+                    resumed.resumeFrom(state.checkpoint());
+                }
+                resumed.enableCheckpoints(log, 1);
+                result = resumed.optimize();
+            }
+
+            // Then
+            assertEquals(expected, encode(result), "resume after line " + cut);
+            assertEquals(expected.size(), CheckpointLog.load(file, resumedOrders, resumedMethods,
+                    resumed.inputHash()).allocations().size());
+        }
+    }
+
+    @Test
+    void shouldReturnNullWhenNoCommitWritten() throws IOException {
+        Path file = tempDir.resolve("empty.ckpt");
+        String hash = new Optimizer(orders(), methods()).inputHash();
+        Files.writeString(file, "H\t" + hash + "\nA\tORDER1\tPUNKTY\t85.00\t15.00\n", StandardCharsets.UTF_8);
+
+        assertNull(CheckpointLog.load(file, orders(), methods(), hash));
+    }
+
+    @Test
+    void shouldRejectResumeWithDifferentInput() throws IOException {
+        // Given - punkt kontrolny dla oryginalnych danych
+        Path file = tempDir.resolve("run.ckpt");
+        try (CheckpointLog log = CheckpointLog.create(file)) {
+            Optimizer optimizer = new Optimizer(orders(), methods());
+            optimizer.enableCheckpoints(log, 1);
+            optimizer.optimize();
+        }
+
+        // When - te same id, inny limit karty
+        List<PaymentMethod> changedMethods = List.of(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("100.00")),
+                new PaymentMethod("mZysk", 10, new BigDecimal("250.00")),
+                new PaymentMethod("BosBankrut", 5, new BigDecimal("300.00"))
+        );
+        String changedHash = new Optimizer(orders(), changedMethods).inputHash();
+
+        // Then
+        IOException e = assertThrows(IOException.class,
+                () -> CheckpointLog.resume(file, orders(), changedMethods, changedHash));
+        assertTrue(e.getMessage().contains("different input"), e.getMessage());
+        assertNotEquals(new Optimizer(orders(), methods()).inputHash(), changedHash);
+    }
+
+    @Test
+    void shouldRejectCheckpointWithoutInputHeader() throws IOException {
+        Path file = tempDir.resolve("old.ckpt");
+        Files.writeString(file, "A\tORDER1\tPUNKTY\t85.00\t15.00\nC\t1\t1\n", StandardCharsets.UTF_8);
+
+        String hash = new Optimizer(orders(), methods()).inputHash();
+        assertThrows(IOException.class, () -> CheckpointLog.load(file, orders(), methods(), hash));
+    }
+
+    @Test
+    void shouldResumeWithTabsAndNewLinesInIds() throws IOException {
+        // Given - id z separatorem pól, końcem linii i backslashem (poprawne w JSON)
+        Path file = tempDir.resolve("escaped.ckpt");
+        List<Order> orders = List.of(
+                new Order("ORDER\t1", new BigDecimal("100.00"), List.of("m\nZysk")),
+                new Order("ORDER\\n2", new BigDecimal("50.00"), List.of()),
+                new Order("ORDER\r\n3", new BigDecimal("80.00"), List.of()));
+        List<PaymentMethod> methods = List.of(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("60.00")),
+                new PaymentMethod("m\nZysk", 10, new BigDecimal("300.00")));
+        Optimizer optimizer = new Optimizer(orders, methods);
+        try (CheckpointLog log = CheckpointLog.create(file)) {
+            optimizer.enableCheckpoints(log, 1);
+            optimizer.optimize();
+        }
+
+        // When
+        CheckpointLog.Checkpoint checkpoint = CheckpointLog.load(file, orders, methods, optimizer.inputHash());
+
+        // Then - każda alokacja w jednej linii i odczytana z tymi samymi obiektami
+        assertEquals(3, checkpoint.allocations().size());
+        assertEquals(List.of(orders.get(0), orders.get(2), orders.get(1)),
+                checkpoint.allocations().stream().map(Allocation::getOrder).toList());
+        assertSame(methods.get(1), checkpoint.allocations().getFirst().getPrimaryMethod());
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            assertTrue(line.startsWith("H\t") || line.startsWith("A\t") || line.startsWith("C\t"), line);
+        }
+    }
+
+    @Test
+    void shouldRoundTripEscapedFields() {
+        for (String id : List.of("plain", "a\tb", "a\nb\r", "back\\slash\\t", "\\", "")) {
+            String escaped = AllocationCodec.escape(id);
+            assertEquals(-1, escaped.indexOf('\t'), escaped);
+            assertEquals(-1, escaped.indexOf('\n'), escaped);
+            assertEquals(id, AllocationCodec.unescape(escaped));
+        }
+        assertThrows(IllegalArgumentException.class, () -> AllocationCodec.unescape("bad\\"));
+        assertThrows(IllegalArgumentException.class, () -> AllocationCodec.unescape("bad\\x"));
+    }
+
+    private static List<String> encode(List<Allocation> allocations) {
+        List<String> lines = new ArrayList<>();
+        for (Allocation allocation : allocations) {
+            lines.add(AllocationCodec.encode(allocation));
+        }
+        return lines;
+    }
+
+    private static List<Order> orders() {
+        return List.of(
+                new Order("ORDER1", new BigDecimal("100.00"), List.of("mZysk")),
+                new Order("ORDER2", new BigDecimal("200.00"), List.of("BosBankrut")),
+                new Order("ORDER3", new BigDecimal("150.00"), List.of("mZysk", "BosBankrut")),
+                new Order("ORDER4", new BigDecimal("50.00"), List.of()),
+                new Order("ORDER5", new BigDecimal("120.00"), List.of("mZysk")),
+                new Order("ORDER6", new BigDecimal("80.00"), List.of())
+        );
+    }
+
+    private static List<PaymentMethod> methods() {
+        return List.of(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("100.00")),
+                new PaymentMethod("mZysk", 10, new BigDecimal("300.00")),
+                new PaymentMethod("BosBankrut", 5, new BigDecimal("300.00"))
+        );
+    }
+}
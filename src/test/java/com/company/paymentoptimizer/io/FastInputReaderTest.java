@@ -0,0 +1,101 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastInputReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final FastInputReader fastInputReader = new FastInputReader();
+    private final InputReader inputReader = new InputReader();
+
+    @Test
+    void shouldReadFixturesLikeJacksonReader() throws IOException, URISyntaxException {
+        String orders = resourcePath("orders.json");
+        String methods = resourcePath("paymentmethods.json");
+
+        assertEquals(inputReader.readOrders(orders), fastInputReader.readOrders(orders));
+        assertEquals(inputReader.readPaymentMethods(methods), fastInputReader.readPaymentMethods(methods));
+    }
+
+    @Test
+    void shouldHandleCommentsNumbersEscapesAndUnknownFields() throws IOException {
+        Path file = tempDir.resolve("orders.json");
+        Files.writeString(file, """
+                // eksport z systemu
+                [
+                  { "id": "ORD\\"1\\u0041", "value": 12.50, "promotions": ["mZysk"], "extra": {"a": [1, {"b": null}]} },
+                  /* bez promocji */
+                  { "value": "7", "id": "ORD2", "promotions": null },
+                  { "id": "ORD3", "value": 1e2, "flag": true }
+                ]
+                """);
+
+        List<Order> expected = inputReader.readOrders(file.toString());
+        List<Order> actual = fastInputReader.readOrders(file.toString());
+
+        assertEquals(expected, actual);
+        assertEquals("ORD\"1A", actual.getFirst().getId());
+        assertEquals(new BigDecimal("12.50"), actual.getFirst().getValue());
+        assertTrue(actual.get(1).getPromotions().isEmpty());
+    }
+
+    @Test
+    void shouldAcceptSameNumberFormsAsJacksonReader() throws IOException {
+        // Given - liczby ułamkowe w polu int, stringi, puste wartości i postaci odrzucane przez Jacksona
+        List<String> numbers = List.of("10", "10.0", "10.9", "-10.5", "1.5e1", "\"10\"", "\" 10 \"", "\"+7\"",
+                "\"\"", "\"null\"", "null", "\"10.5\"", "+7", "10.", ".5", "0x10", "010", "2147483648", "1e10",
+                "true", "\"abc\"");
+        Path file = tempDir.resolve("methods.json");
+
+        for (String number : numbers) {
+            Files.writeString(file, "[{\"id\": \"PUNKTY\", \"discount\": " + number + ", \"limit\": " + number + "}]");
+
+            // When
+            List<PaymentMethod> expected = readOrNull(() -> inputReader.readPaymentMethods(file.toString()));
+            List<PaymentMethod> actual = readOrNull(() -> fastInputReader.readPaymentMethods(file.toString()));
+
+            // Then - ten sam wynik albo błąd w obu
+            assertEquals(expected, actual, number);
+        }
+    }
+
+    @Test
+    void shouldReportMalformedInput() throws IOException {
+        Path file = tempDir.resolve("methods.json");
+        Files.writeString(file, "[{\"id\": \"PUNKTY\", \"discount\": \"abc\", \"limit\": \"10\"}]");
+
+        IOException error = assertThrows(IOException.class, () -> fastInputReader.readPaymentMethods(file.toString()));
+        assertTrue(error.getMessage().contains("line 1"));
+    }
+
+    private interface Read {
+        List<PaymentMethod> read() throws IOException;
+    }
+
+    private static List<PaymentMethod> readOrNull(Read read) {
+        try {
+            return read.read();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String resourcePath(String name) throws URISyntaxException {
+        return Paths.get(getClass().getClassLoader().getResource(name).toURI()).toString();
+    }
+}
@@ -0,0 +1,149 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Skalowanie odczytu zamówień (lista obiektów i tabela kolumnowa) na plikach 1k - 1M zamówień.
+ * Wyłączone ze zwykłego mvn test - uruchomienie: mvn test -Pperformance
+ */
+@Tag("performance")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class InputReaderScalingTest {
+
+    private static final long SEED = 2025;
+    private static final int[] SIZES = {1_000, 10_000, 100_000, 1_000_000};
+
+    //parsowanie powinno być liniowe - przy 10x większym pliku czas na zamówienie rośnie najwyżej tyle razy
+    private static final double MAX_PER_ORDER_TIME_GROWTH = 3.0;
+    private static final int MIN_TIMED_SIZE = 10_000;
+    //alokacje parsowania (tokeny, stringi) - tabela nie tworzy BigDecimal ani Stringów promocji, więc alokuje mniej
+    private static final long MAX_BYTES_PER_ORDER = 1_000;
+
+    @TempDir
+    static Path dir;
+
+    private final Map<Integer, Path> files = new LinkedHashMap<>();
+    private final Map<Integer, Run> listRuns = new LinkedHashMap<>();
+    private final Map<Integer, Run> tableRuns = new LinkedHashMap<>();
+
+    private record Run(long nanos, long allocatedBytes) {
+    }
+
+    @FunctionalInterface
+    private interface Read {
+        int read(InputReader reader, String path) throws IOException;
+    }
+
+    @BeforeAll
+    void measure() throws IOException {
+        for (int size : SIZES) {
+            files.put(size, writeOrders(size));
+        }
+        //jeden wątek parsera - liczniki alokacji są per wątek
+        InputReader reader = new InputReader(1);
+        Read list = (r, path) -> r.readOrders(path).size();
+        Read table = (r, path) -> r.readOrderTable(path).size();
+        for (int i = 0; i < 3; i++) {
+            measure(reader, list, MIN_TIMED_SIZE);
+            measure(reader, table, MIN_TIMED_SIZE);
+        }
+        for (int size : SIZES) {
+            listRuns.put(size, measure(reader, list, size));
+            tableRuns.put(size, measure(reader, table, size));
+            System.err.printf("read %,d orders: list %d ms %d B/order, table %d ms %d B/order%n", size,
+                    listRuns.get(size).nanos() / 1_000_000, listRuns.get(size).allocatedBytes() / size,
+                    tableRuns.get(size).nanos() / 1_000_000, tableRuns.get(size).allocatedBytes() / size);
+        }
+    }
+
+    @Test
+    void shouldReadOrdersInLinearTime() {
+        assertLinear(listRuns);
+        assertLinear(tableRuns);
+    }
+
+    @Test
+    void shouldStayWithinAllocationBudgetPerOrder() {
+        for (int size : SIZES) {
+            long listBytes = listRuns.get(size).allocatedBytes() / size;
+            long tableBytes = tableRuns.get(size).allocatedBytes() / size;
+            assertTrue(listBytes <= MAX_BYTES_PER_ORDER, size + " orders (list): " + listBytes + " B/order");
+            assertTrue(tableBytes <= MAX_BYTES_PER_ORDER, size + " orders (table): " + tableBytes + " B/order");
+            assertTrue(tableBytes < listBytes, size + " orders: table " + tableBytes + " vs list " + listBytes + " B/order");
+        }
+    }
+
+    @Test
+    void shouldReadTheSameOrdersIntoBothRepresentations() throws IOException {
+        InputReader reader = new InputReader(1);
+        String path = files.get(MIN_TIMED_SIZE).toString();
+        List<Order> orders = reader.readOrders(path);
+        OrderTable table = reader.readOrderTable(path);
+        assertEquals(orders, table.asOrders());
+    }
+
+    private static void assertLinear(Map<Integer, Run> runs) {
+        for (int i = 1; i < SIZES.length; i++) {
+            if (SIZES[i - 1] < MIN_TIMED_SIZE) {
+                continue;
+            }
+            double previous = (double) runs.get(SIZES[i - 1]).nanos() / SIZES[i - 1];
+            double current = (double) runs.get(SIZES[i]).nanos() / SIZES[i];
+            assertTrue(current / previous <= MAX_PER_ORDER_TIME_GROWTH, String.format(
+                    "read time per order grew %.2fx from %d to %d orders", current / previous, SIZES[i - 1], SIZES[i]));
+        }
+    }
+
+    private Run measure(InputReader reader, Read read, int size) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Run best = null;
+        for (int attempt = 0; attempt < (size < 1_000_000 ? 3 : 2); attempt++) {
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            int count = read.read(reader, files.get(size).toString());
+            Run run = new Run(System.nanoTime() - start, threads.getCurrentThreadAllocatedBytes() - allocatedBefore);
+            assertEquals(size, count);
+            if (best == null || run.nanos() < best.nanos()) {
+                best = run;
+            }
+        }
+        return best;
+    }
+
+    private static Path writeOrders(int count) throws IOException {
+        Random random = new Random(SEED);
+        Path file = dir.resolve("orders-" + count + ".json");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("[\n");
+            for (int i = 0; i < count; i++) {
+                writer.write("{\"id\": \"ORDER" + i + "\", \"value\": \"" + (1 + random.nextInt(500)) + "."
+                        + random.nextInt(10) + "0\", \"promotions\": [");
+                int promotionCount = random.nextInt(4);
+                for (int p = 0; p < promotionCount; p++) {
+                    writer.write((p > 0 ? ", " : "") + "\"CARD" + random.nextInt(20) + "\"");
+                }
+                writer.write(i + 1 < count ? "]},\n" : "]}\n");
+            }
+            writer.write("]\n");
+        }
+        return file;
+    }
+}
@@ -4,13 +4,20 @@ import com.company.paymentoptimizer.model.Order;
 import com.company.paymentoptimizer.model.PaymentMethod;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -55,4 +62,75 @@ public class InputReaderTest {
         assertEquals(methods.get(2).getDiscount(), 5);
     }
 
+    @Test
+    void readGzipShardsMatchingGlobInFileNameOrder(@TempDir Path dir) throws IOException {
+        // Given - shardy zapisane w odwrotnej kolejności, jeden nieskompresowany, jeden niepasujący plik
+        writeGzip(dir.resolve("orders-0002.json.gz"), ordersJson(3, 4));
+        Files.writeString(dir.resolve("orders-0001.json"), ordersJson(1, 2));
+        writeGzip(dir.resolve("orders-0003.json.gz"), ordersJson(5, 5));
+        Files.writeString(dir.resolve("other.json"), ordersJson(9, 9));
+
+        // When
+        List<Order> orders = new InputReader(2).readOrders(dir.resolve("orders-*.json*").toString());
+
+        // Then
+        assertEquals(List.of("order1", "order2", "order3", "order4", "order5"), ids(orders));
+    }
+
+    @Test
+    void readAllJsonFilesFromDirectory(@TempDir Path dir) throws IOException {
+        writeGzip(dir.resolve("b.json.gz"), ordersJson(3, 3));
+        Files.writeString(dir.resolve("a.json"), ordersJson(1, 2));
+        Files.writeString(dir.resolve("notes.txt"), "not an order file");
+
+        List<Order> orders = inputReader.readOrders(dir.toString());
+
+        assertEquals(List.of("order1", "order2", "order3"), ids(orders));
+    }
+
+    @Test
+    void streamShardsInFileNameOrder(@TempDir Path dir) throws IOException {
+        writeGzip(dir.resolve("orders-2.json.gz"), ordersJson(2, 2));
+        writeGzip(dir.resolve("orders-1.json.gz"), ordersJson(1, 1));
+
+        List<Order> orders = new ArrayList<>();
+        inputReader.readOrders(dir.resolve("orders-?.json.gz").toString(), orders::add);
+
+        assertEquals(List.of("order1", "order2"), ids(orders));
+    }
+
+    @Test
+    void rejectDuplicateOrderIdsAcrossShards(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("orders-1.json"), ordersJson(1, 3));
+        writeGzip(dir.resolve("orders-2.json.gz"), ordersJson(3, 4));
+
+        IOException e = assertThrows(IOException.class, () -> inputReader.readOrders(dir.toString()));
+        assertTrue(e.getMessage().contains("order3"), e.getMessage());
+        assertThrows(IOException.class, () -> inputReader.readOrders(dir.toString(), order -> { }));
+    }
+
+    @Test
+    void failWhenGlobMatchesNothing(@TempDir Path dir) {
+        assertThrows(IOException.class, () -> inputReader.readOrders(dir.resolve("*.json.gz").toString()));
+    }
+
+    private static String ordersJson(int from, int to) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = from; i <= to; i++) {
+            json.append(i == from ? "" : ",")
+                    .append("{\"id\": \"order").append(i).append("\", \"value\": \"").append(i).append("0.00\"}");
+        }
+        return json.append("]").toString();
+    }
+
+    private static void writeGzip(Path file, String content) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).toList();
+    }
+
 }
@@ -0,0 +1,120 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.OrderTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderTableDeserializerTest {
+
+    private final InputReader inputReader = new InputReader();
+
+    @Test
+    void shouldReadOrdersIntoColumnsWithInternedPromotions(@TempDir Path dir) throws IOException {
+        // Given - liczby jako string i jako liczba, null, nieznane pola, komentarz
+        Path file = dir.resolve("orders.json");
+        Files.writeString(file, """
+                [
+                  // komentarz
+                  {"id": "ORDER1", "value": "100.00", "promotions": ["mZysk", "BosBankrut"], "extra": {"a": [1, 2]}},
+                  {"id": "ORDER2", "value": 12.5, "promotions": ["mZysk"]},
+                  {"id": "ZAMÓWIENIE3", "value": 7, "promotions": null},
+                  {"value": "1.10", "id": "ORDER4"}
+                ]
+                """);
+
+        // When
+        OrderTable table = inputReader.readOrderTable(file.toString());
+
+        // Then
+        assertEquals(4, table.size());
+        assertEquals(2, table.getPromotionDictionarySize());
+        assertEquals("ZAMÓWIENIE3", table.getId(2));
+        assertEquals(10000, table.getValueCents(0));
+        assertEquals(1250, table.getValueCents(1));
+        //skala z wejścia jest zachowana - tak jak przy zwykłym odczycie
+        assertEquals(new BigDecimal("7"), table.getValue(2));
+        assertEquals(new BigDecimal("12.5"), table.getValue(1));
+        assertEquals(table.getPromotion(0, 0), table.getPromotion(1, 0));
+        assertEquals(0, table.getPromotionCount(3));
+
+        Order order = table.getOrder(0);
+        assertEquals("ORDER1", order.getId());
+        assertEquals(new BigDecimal("100.00"), order.getValue());
+        assertEquals(List.of("mZysk", "BosBankrut"), order.getPromotions());
+        assertEquals(order, table.asOrders().getFirst());
+        assertEquals(new Order("ORDER1", new BigDecimal("100.00"), List.of("mZysk", "BosBankrut")), order);
+        assertThrows(UnsupportedOperationException.class, () -> order.setId("ORDER5"));
+    }
+
+    @Test
+    void shouldReadPlainAndOtherValueFormsLikeListReader(@TempDir Path dir) throws IOException {
+        // Given - zwykłe wartości czytane wprost do groszy, reszta przez BigDecimal
+        Path file = dir.resolve("orders.json");
+        Files.writeString(file, """
+                [
+                  {"id": "o1", "value": "0.05", "promotions": ["A", "B"]},
+                  {"id": "o2", "value": "293.0", "promotions": ["B", "A", "B"]},
+                  {"id": "o3", "value": 7, "promotions": []},
+                  {"id": "o4", "value": " 3.10 "},
+                  {"id": "o5", "value": 1.5e1, "promotions": ["C"]},
+                  {"id": "o6", "value": "2.500"},
+                  {"id": "o7", "value": "12345678901234567.00"}
+                ]
+                """);
+
+        // When
+        OrderTable table = inputReader.readOrderTable(file.toString());
+        List<Order> orders = inputReader.readOrders(file.toString());
+
+        // Then
+        assertEquals(orders, table.asOrders());
+        assertEquals(3, table.getPromotionDictionarySize());
+        assertEquals(new BigDecimal("2.500"), table.getValue(5));
+    }
+
+    @Test
+    void shouldRejectValueFinerThanCents(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("orders.json");
+        Files.writeString(file, "[{\"id\": \"ORDER1\", \"value\": \"10.005\"}]");
+
+        IOException e = assertThrows(IOException.class, () -> inputReader.readOrderTable(file.toString()));
+        assertTrue(e.getMessage().contains("ORDER1"), e.getMessage());
+    }
+
+    @Test
+    void shouldMergeShardsAndDetectDuplicates(@TempDir Path dir) throws IOException {
+        // Given
+        writeGzip(dir.resolve("orders-2.json.gz"), "[{\"id\": \"o3\", \"value\": 3, \"promotions\": [\"B\", \"A\"]}]");
+        Files.writeString(dir.resolve("orders-1.json"),
+                "[{\"id\": \"o1\", \"value\": 1, \"promotions\": [\"A\"]}, {\"id\": \"o2\", \"value\": 2}]");
+
+        // When
+        OrderTable table = inputReader.readOrderTable(dir.toString());
+
+        // Then
+        assertEquals(List.of("o1", "o2", "o3"), table.asOrders().stream().map(Order::getId).toList());
+        assertEquals(List.of("B", "A"), table.getOrder(2).getPromotions());
+        assertEquals(2, table.getPromotionDictionarySize());
+
+        Files.writeString(dir.resolve("orders-3.json"), "[{\"id\": \"o2\", \"value\": 5}]");
+        assertThrows(IOException.class, () -> inputReader.readOrderTable(dir.toString()));
+    }
+
+    private static void writeGzip(Path file, String content) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
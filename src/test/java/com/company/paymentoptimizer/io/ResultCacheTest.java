@@ -0,0 +1,136 @@
+package com.company.paymentoptimizer.io;
+
+import com.company.paymentoptimizer.App;
+import com.company.paymentoptimizer.algo.Optimizer;
+import com.company.paymentoptimizer.model.Allocation;
+import com.company.paymentoptimizer.model.Order;
+import com.company.paymentoptimizer.model.PaymentMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void shouldReturnStoredAllocationsForSameInput() throws IOException {
+        // Given
+        ResultCache cache = new ResultCache(cacheDir, 1024 * 1024, Optimizer.SOLVER_VERSION);
+        List<Allocation> computed = new Optimizer(orders("mZysk", "BosBankrut"), methods()).optimize();
+        cache.store(cache.key(orders("mZysk", "BosBankrut"), methods()), computed, List.of());
+
+        // When - ta sama treść, inna kolejność promocji
+        List<Order> orders = orders("BosBankrut", "mZysk");
+        List<PaymentMethod> methods = methods();
+        Optional<ResultCache.CachedResult> cached = cache.lookup(cache.key(orders, methods), orders, methods);
+
+        // Then
+        assertTrue(cached.isPresent());
+        assertEquals(computed.stream().map(AllocationCodec::encode).toList(),
+                cached.get().allocations().stream().map(AllocationCodec::encode).toList());
+        assertSame(orders.getFirst(), cached.get().allocations().getFirst().getOrder());
+    }
+
+    @Test
+    void shouldMissAfterSolverVersionChange() throws IOException {
+        ResultCache oldCache = new ResultCache(cacheDir, 1024 * 1024, "old");
+        String key = oldCache.key(orders(), methods());
+        oldCache.store(key, new Optimizer(orders(), methods()).optimize(), List.of());
+
+        ResultCache newCache = new ResultCache(cacheDir, 1024 * 1024, "new");
+
+        assertNotEquals(key, newCache.key(orders(), methods()));
+        // nawet przy tym samym kluczu nagłówek wersji się nie zgadza
+        assertTrue(newCache.lookup(key, orders(), methods()).isEmpty());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntries() throws IOException {
+        // Given - limit mieszczący tylko dwa wpisy
+        ResultCache probe = new ResultCache(cacheDir.resolve("probe"), 1024 * 1024, "v");
+        probe.store("probe", new Optimizer(orders(), methods()).optimize(), List.of());
+        long entrySize = Files.size(cacheDir.resolve("probe").resolve("probe.alloc"));
+        ResultCache cache = new ResultCache(cacheDir.resolve("lru"), 2 * entrySize, "v");
+        List<Allocation> allocations = new Optimizer(orders(), methods()).optimize();
+
+        cache.store("a", allocations, List.of());
+        cache.store("b", allocations, List.of());
+        Files.setLastModifiedTime(cacheDir.resolve("lru").resolve("a.alloc"), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(cacheDir.resolve("lru").resolve("b.alloc"), FileTime.fromMillis(2_000));
+
+        // When
+        cache.store("c", allocations, List.of());
+
+        // Then
+        try (Stream<Path> files = Files.list(cacheDir.resolve("lru"))) {
+            assertEquals(List.of("b.alloc", "c.alloc"),
+                    files.map(path -> path.getFileName().toString()).sorted().toList());
+        }
+    }
+
+    @Test
+    void shouldPrintSameOutputOnHitAndMiss(@TempDir Path inputDir) throws IOException {
+        // Given - ORDER1 się nie zmieści (komunikat "Unallocated order" przed raportem)
+        Path ordersFile = inputDir.resolve("orders.json");
+        Files.writeString(ordersFile, """
+                [{"id": "ORDER1", "value": "100.00"}, {"id": "ORDER2", "value": "50.00"},
+                 {"id": "ORDER\\t3", "value": "500.00"}]
+                """);
+        Path methodsFile = inputDir.resolve("paymentmethods.json");
+        Files.writeString(methodsFile, """
+                [{"id": "PUNKTY", "discount": "15", "limit": "10.00"}, {"id": "CARD1", "discount": "5", "limit": "60.00"}]
+                """);
+        String[] args = {ordersFile.toString(), methodsFile.toString(), "--cache-dir", cacheDir.toString()};
+
+        // When
+        String miss = runApp(args);
+        String hit = runApp(args);
+
+        // Then
+        assertTrue(miss.startsWith("Unallocated order"), miss);
+        assertTrue(miss.contains("Unallocated orderORDER\t3"), miss);
+        assertEquals(miss, hit);
+    }
+
+    private static String runApp(String[] args) {
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            App.main(args);
+        } finally {
+            System.setOut(originalOut);
+        }
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<Order> orders(String... promotions) {
+        return List.of(
+                new Order("ORDER1", new BigDecimal("100.00"), List.of(promotions)),
+                new Order("ORDER2", new BigDecimal("50.00"), List.of())
+        );
+    }
+
+    private static List<PaymentMethod> methods() {
+        return List.of(
+                new PaymentMethod("PUNKTY", 15, new BigDecimal("60.00")),
+                new PaymentMethod("mZysk", 10, new BigDecimal("180.00")),
+                new PaymentMethod("BosBankrut", 5, new BigDecimal("200.00"))
+        );
+    }
+}
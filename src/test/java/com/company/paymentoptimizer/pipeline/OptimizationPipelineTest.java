@@ -0,0 +1,98 @@
+package com.company.paymentoptimizer.pipeline;
+
+import com.company.paymentoptimizer.algo.Optimizer;
+import com.company.paymentoptimizer.io.InputReader;
+import com.company.paymentoptimizer.model.Allocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizationPipelineTest {
+
+    @Test
+    void shouldProduceSameReportAsSequentialRun() throws Exception {
+        // Given
+        String ordersPath = resourcePath("orders.json");
+        String methodsPath = resourcePath("paymentmethods.json");
+        InputReader inputReader = new InputReader();
+        Optimizer sequential = new Optimizer(inputReader.readOrders(ordersPath),
+                inputReader.readPaymentMethods(methodsPath));
+        List<Allocation> expected = sequential.optimize();
+        String expectedReport = sequential.generateReport(expected) + System.lineSeparator();
+
+        // When - kolejki o pojemności 1 wymuszają blokowanie producentów
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        List<Allocation> actual = new OptimizationPipeline(inputReader, 1)
+                .run(ordersPath, methodsPath, optimizer -> { }, out);
+
+        // Then
+        assertEquals(expected, actual);
+        assertEquals(expectedReport, buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldKeepUnallocatedOrderMessagesOutOfStreamedReport(@TempDir Path dir) throws Exception {
+        // Given - ORDER9 nie zmieści się w żadnym limicie
+        Path ordersFile = dir.resolve("orders.json");
+        Path methodsFile = dir.resolve("paymentmethods.json");
+        StringBuilder orders = new StringBuilder("[");
+        for (int i = 0; i < 50; i++) {
+            orders.append("{\"id\": \"ORDER").append(i).append("\", \"value\": \"10.00\", \"promotions\": [\"CARD1\"]},");
+        }
+        orders.append("{\"id\": \"ORDER9X\", \"value\": \"900.00\"}]");
+        Files.writeString(ordersFile, orders.toString());
+        Files.writeString(methodsFile, """
+                [{"id": "PUNKTY", "discount": "15", "limit": "20.00"},
+                 {"id": "CARD1", "discount": "10", "limit": "600.00"}]
+                """);
+        InputReader inputReader = new InputReader();
+        Optimizer sequential = new Optimizer(inputReader.readOrders(ordersFile.toString()),
+                inputReader.readPaymentMethods(methodsFile.toString()));
+        sequential.setUnallocatedOrderListener(order -> { });
+        String expectedReport = sequential.generateReport(sequential.optimize()) + System.lineSeparator();
+
+        // When - raport na stdout, tak jak w App
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(stdout, true, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(stderr, true, StandardCharsets.UTF_8));
+            new OptimizationPipeline(inputReader, 1)
+                    .run(ordersFile.toString(), methodsFile.toString(), optimizer -> { }, System.out);
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+
+        // Then
+        assertEquals(expectedReport, stdout.toString(StandardCharsets.UTF_8));
+        assertTrue(stderr.toString(StandardCharsets.UTF_8).contains("Unallocated orderORDER9X"));
+    }
+
+    @Test
+    void shouldPropagateParseFailure() throws Exception {
+        String methodsPath = resourcePath("paymentmethods.json");
+        OptimizationPipeline pipeline = new OptimizationPipeline(new InputReader(), 4);
+
+        assertThrows(IOException.class, () ->
+                pipeline.run("does-not-exist.json", methodsPath, optimizer -> { }, System.out));
+    }
+
+    private String resourcePath(String name) throws URISyntaxException {
+        return Paths.get(getClass().getClassLoader().getResource(name).toURI()).toString();
+    }
+}